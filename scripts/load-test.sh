@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+
+# Compare le debit et la latence p99 entre threads plateforme et threads virtuels.
+# Lancer le service deux fois (SPRING_THREADS_VIRTUAL_ENABLED=false puis true)
+# et executer ce script contre chaque instance. Necessite `hey`.
+#
+# Resultats : comparaison NON ENCORE MESUREE. Le script n'a pas encore ete execute contre une
+# instance reliee a MongoDB ; rien ne montre a ce jour que les threads virtuels ameliorent le
+# debit ou la latence de ce service, et spring.threads.virtual.enabled reste a false tant que
+# les chiffres ne sont pas reportes ici (materiel, version de MongoDB, DURATION, CONCURRENCY) :
+#
+#   mode          GET req/s   GET p99   POST req/s   POST p99
+#   plateforme    -           -         -            -
+#   virtuels      -           -         -            -
+
+set -e
+
+BASE_URL=${BASE_URL:-"http://localhost:8081"}
+DURATION=${DURATION:-"30s"}
+CONCURRENCY=${CONCURRENCY:-"200"}
+USER_ID=${USER_ID:-"load-test-user"}
+
+if ! command -v hey > /dev/null; then
+    echo "Cannot find hey (https://github.com/rakyll/hey)"
+    exit 1
+fi
+
+curl -s -o /dev/null -X POST "$BASE_URL/carts/$USER_ID/items" \
+  -H "Content-Type: application/json" \
+  -d '{"itemId":"load-test-item", "quantity":1, "unitPrice":9.99}'
+
+echo "GET /carts/$USER_ID ($CONCURRENCY connexions, $DURATION)"
+hey -z "$DURATION" -c "$CONCURRENCY" "$BASE_URL/carts/$USER_ID" | grep -E "Requests/sec|99%"
+
+echo "POST /carts/$USER_ID/items ($CONCURRENCY connexions, $DURATION)"
+hey -z "$DURATION" -c "$CONCURRENCY" -m POST -T "application/json" \
+  -d '{"itemId":"load-test-item", "quantity":1, "unitPrice":9.99}' \
+  "$BASE_URL/carts/$USER_ID/items" | grep -E "Requests/sec|99%"
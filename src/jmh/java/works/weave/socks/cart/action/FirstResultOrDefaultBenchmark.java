@@ -0,0 +1,28 @@
+package works.weave.socks.cart.action;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FirstResultOrDefaultBenchmark {
+
+    private final List<String> one = List.of("first");
+    private final List<String> none = List.of();
+
+    @Benchmark
+    public String present() {
+        return new FirstResultOrDefault<>(one, () -> "default").get();
+    }
+
+    @Benchmark
+    public String absent() {
+        return new FirstResultOrDefault<>(none, () -> "default").get();
+    }
+}
@@ -0,0 +1,156 @@
+package works.weave.socks.cart.cart;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart lines written as a JSON array, from the raw BSON the driver hands over, either read as a
+ * whole cart then serialized like the former {@code List<Item>} response, or decoded and written
+ * one unwound row at a time like {@link MongoCartDAO#items(String)}.
+ * <p>
+ * The {@code *FirstByte} benchmarks stop at the first byte reaching the response stream, after
+ * the generator buffer fills. Run with {@code -prof gc} (the profile's default) to compare
+ * allocation per response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartItemsStreamingBenchmark {
+
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    /**
+     * Thrown on the first write, preallocated so that it costs nothing to throw. Later writes, made
+     * while the generator is closed, are ignored.
+     */
+    private static final IOException FIRST_BYTE = new IOException("first byte") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    @Param({"100", "1000", "10000"})
+    private int lines;
+
+    private MappingMongoConverter converter;
+    private ObjectMapper objectMapper;
+    private ObjectWriter itemWriter;
+    private RawBsonDocument cart;
+    private List<RawBsonDocument> rows;
+
+    @Setup
+    public void setUp() {
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        objectMapper = new ObjectMapper();
+        itemWriter = objectMapper.writerFor(Item.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        ObjectId id = new ObjectId();
+        List<Document> items = new ArrayList<>(lines);
+        rows = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Document line = MongoCartDAO.line(converter, new Item(null, "item-" + i, 1 + i % 5, 9.99f + i % 100, null));
+            items.add(line);
+            rows.add(new RawBsonDocument(new Document(MongoCartDAO.ID, id).append(MongoCartDAO.VERSION, 42L)
+                    .append(MongoCartDAO.ITEMS, line), CODEC));
+        }
+        cart = new RawBsonDocument(new Document(MongoCartDAO.ID, id).append(MongoCartDAO.CUSTOMER_ID, "customer")
+                .append(MongoCartDAO.VERSION, 42L).append(MongoCartDAO.ITEMS, items), CODEC);
+    }
+
+    @Benchmark
+    public long materialized() throws IOException {
+        ByteCounter out = new ByteCounter(false);
+        writeMaterialized(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamed() throws IOException {
+        ByteCounter out = new ByteCounter(false);
+        writeStreamed(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public boolean materializedFirstByte() {
+        try {
+            writeMaterialized(new ByteCounter(true));
+            return false;
+        } catch (IOException e) {
+            return e == FIRST_BYTE;
+        }
+    }
+
+    @Benchmark
+    public boolean streamedFirstByte() {
+        try {
+            writeStreamed(new ByteCounter(true));
+            return false;
+        } catch (IOException e) {
+            return e == FIRST_BYTE;
+        }
+    }
+
+    private void writeMaterialized(OutputStream out) throws IOException {
+        Cart read = MongoCartDAO.counted(converter.read(Cart.class, cart.decode(CODEC)));
+        objectMapper.writeValue(out, read.contents());
+    }
+
+    private void writeStreamed(OutputStream out) throws IOException {
+        try (JsonGenerator json = itemWriter.createGenerator(out)) {
+            json.writeStartArray();
+            for (RawBsonDocument row : rows) {
+                Document line = row.decode(CODEC).get(MongoCartDAO.ITEMS, Document.class);
+                itemWriter.writeValue(json, converter.read(Item.class, line));
+            }
+            json.writeEndArray();
+        }
+    }
+
+    private static final class ByteCounter extends OutputStream {
+
+        private final boolean stopAtFirstByte;
+        private long count;
+
+        ByteCounter(boolean stopAtFirstByte) {
+            this.stopAtFirstByte = stopAtFirstByte;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(null, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (stopAtFirstByte && count == 0) {
+                count = len;
+                throw FIRST_BYTE;
+            }
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package works.weave.socks.cart.cart;
+
+import org.openjdk.jmh.annotations.*;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.item.FoundItem;
+import works.weave.socks.cart.item.ItemDAO;
+import works.weave.socks.cart.item.ItemResource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full resource flows of the controllers over the in-memory DAOs, so that only the domain code
+ * is measured, for carts of 1 to 500 lines. Flows modify the cart, so each of them starts by storing
+ * a fresh copy of the cart built at setup; {@link #copyCart()} measures that copy alone, to be
+ * subtracted from the other results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartResourceBenchmark {
+
+    private static final String CUSTOMER_ID = "customer";
+
+    @Param({"1", "10", "100", "500"})
+    private int size;
+
+    private CartDAO cartDAO;
+    private ItemDAO itemDAO;
+    private Item last;
+    private Cart template;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        cartDAO = new CartDAO.Fake();
+        itemDAO = new ItemDAO.Fake();
+        Cart cart = new Cart(CUSTOMER_ID);
+        for (int i = 0; i < size; i++) {
+            Item item = new Item("item-" + i);
+            cart.add(itemDAO.save(item));
+        }
+        template = cart;
+        reset();
+        last = new Item("item-" + (size - 1));
+    }
+
+    private void reset() {
+        cartDAO.save(new Cart(template));
+    }
+
+    @Benchmark
+    public Cart copyCart() {
+        reset();
+        return cartDAO.findByCustomerId(CUSTOMER_ID).get(0);
+    }
+
+    @Benchmark
+    public Cart getCart() {
+        return new CartResource(cartDAO, CUSTOMER_ID).value().get();
+    }
+
+    @Benchmark
+    public Cart addItem() {
+        reset();
+        CartResource cartResource = new CartResource(cartDAO, CUSTOMER_ID);
+        cartResource.contents().get().add(() -> new Item("new-item")).run();
+        return cartResource.value().get();
+    }
+
+    @Benchmark
+    public Cart removeItem() {
+        reset();
+        CartResource cartResource = new CartResource(cartDAO, CUSTOMER_ID);
+        Item item = FoundItem.inCart(() -> cartResource.value().get(), () -> last).get();
+        cartResource.contents().get().delete(() -> item).run();
+        new ItemResource(itemDAO, () -> item).destroy().run();
+        return cartResource.value().get();
+    }
+
+    @Benchmark
+    public Cart updateItem() {
+        reset();
+        CartResource cartResource = new CartResource(cartDAO, CUSTOMER_ID);
+        Item merged = new Item(FoundItem.inCart(() -> cartResource.value().get(), () -> last).get(), 3).nextVersion();
+        cartResource.contents().get().update(() -> merged).run();
+        new ItemResource(itemDAO, () -> merged).create().get();
+        return cartResource.value().get();
+    }
+
+    @Benchmark
+    public Cart mergeCarts() {
+        reset();
+        Cart session = new Cart("session");
+        session.add(new Item(last, 1));
+        cartDAO.save(session);
+        new CartResource(cartDAO, CUSTOMER_ID).merge(session).run();
+        return new CartResource(cartDAO, CUSTOMER_ID).value().get();
+    }
+}
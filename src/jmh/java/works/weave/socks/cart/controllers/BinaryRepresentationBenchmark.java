@@ -0,0 +1,104 @@
+package works.weave.socks.cart.controllers;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of writing and reading a cart in JSON, CBOR and Smile, with mappers configured alike.
+ * Payload sizes, gzipped or not, are printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryRepresentationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int lines;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private ObjectWriter cborWriter;
+    private ObjectReader cborReader;
+    private ObjectWriter smileWriter;
+    private ObjectReader smileReader;
+    private Cart cart;
+    private byte[] json;
+    private byte[] cbor;
+    private byte[] smile;
+
+    @Setup
+    public void setUp() throws IOException {
+        // As configured by Spring Boot
+        ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        ObjectMapper cborMapper = new CBORMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        ObjectMapper smileMapper = new SmileMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        writer = objectMapper.writerFor(Cart.class);
+        reader = objectMapper.readerFor(Cart.class);
+        cborWriter = cborMapper.writerFor(Cart.class);
+        cborReader = cborMapper.readerFor(Cart.class);
+        smileWriter = smileMapper.writerFor(Cart.class);
+        smileReader = smileMapper.readerFor(Cart.class);
+        cart = new Cart("customer-" + lines);
+        for (int i = 0; i < lines; i++) {
+            cart.add(new Item(null, "item-" + i, 1 + i % 5, 9.99f + i % 100, null));
+        }
+        json = encodeJson();
+        cbor = encodeCbor();
+        smile = encodeSmile();
+        System.out.printf("%n%d lines: json %d B (gzip %d B), cbor %d B (gzip %d B), smile %d B (gzip %d B)%n",
+                lines, json.length, gzip(json), cbor.length, gzip(cbor), smile.length, gzip(smile));
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return writer.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() throws IOException {
+        return cborWriter.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public byte[] encodeSmile() throws IOException {
+        return smileWriter.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public Cart decodeJson() throws IOException {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public Cart decodeCbor() throws IOException {
+        return cborReader.readValue(cbor);
+    }
+
+    @Benchmark
+    public Cart decodeSmile() throws IOException {
+        return smileReader.readValue(smile);
+    }
+
+    private static int gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,60 @@
+package works.weave.socks.cart.entities;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line-level operations of {@link Cart} and the {@link Item} identity they rely on, for carts of
+ * 1 to 500 lines. The looked up item is always the last line, the worst case of a linear scan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    private int size;
+
+    private Cart cart;
+    private Item last;
+    private Item absent;
+
+    @Setup
+    public void setUp() {
+        cart = new Cart("customer");
+        for (int i = 0; i < size; i++) {
+            cart.add(new Item("item-" + i));
+        }
+        last = new Item("item-" + (size - 1));
+        absent = new Item("absent");
+    }
+
+    @Benchmark
+    public Cart addAndRemove() {
+        return cart.add(absent).remove(absent);
+    }
+
+    @Benchmark
+    public Cart removeAbsent() {
+        return cart.remove(absent);
+    }
+
+    @Benchmark
+    public Cart updateLast() {
+        return cart.update(new Item(last, 1));
+    }
+
+    @Benchmark
+    public boolean itemEquals() {
+        return cart.getItems().get(size - 1).equals(last);
+    }
+
+    @Benchmark
+    public int itemHashCode() {
+        return last.hashCode();
+    }
+}
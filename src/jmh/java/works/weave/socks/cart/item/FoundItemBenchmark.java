@@ -0,0 +1,65 @@
+package works.weave.socks.cart.item;
+
+import org.openjdk.jmh.annotations.*;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item lookups done on every items request, for carts of 1 to 500 lines: linear scans of the
+ * lines against lookups through the cart's line index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoundItemBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    private int size;
+
+    private Cart cart;
+    private String lastItemId;
+
+    @Setup
+    public void setUp() {
+        cart = new Cart("customer");
+        for (int i = 0; i < size; i++) {
+            cart.add(new Item("item-" + i));
+        }
+        lastItemId = "item-" + (size - 1);
+    }
+
+    @Benchmark
+    public Item get() {
+        return new FoundItem(cart::contents, () -> new Item(lastItemId)).get();
+    }
+
+    @Benchmark
+    public boolean hasItem() {
+        return new FoundItem(cart::contents, () -> new Item(lastItemId)).hasItem();
+    }
+
+    @Benchmark
+    public boolean hasAbsentItem() {
+        return new FoundItem(cart::contents, () -> new Item("absent")).hasItem();
+    }
+
+    @Benchmark
+    public Item getIndexed() {
+        return FoundItem.inCart(() -> cart, () -> new Item(lastItemId)).get();
+    }
+
+    @Benchmark
+    public boolean hasItemIndexed() {
+        return FoundItem.inCart(() -> cart, () -> new Item(lastItemId)).hasItem();
+    }
+
+    @Benchmark
+    public boolean hasAbsentItemIndexed() {
+        return FoundItem.inCart(() -> cart, () -> new Item("absent")).hasItem();
+    }
+}
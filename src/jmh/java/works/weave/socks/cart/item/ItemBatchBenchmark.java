@@ -0,0 +1,146 @@
+package works.weave.socks.cart.item;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import works.weave.socks.cart.cart.CartDAO;
+import works.weave.socks.cart.cart.CartResource;
+import works.weave.socks.cart.cart.CartUnitOfWork;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.entities.ItemOperation;
+import works.weave.socks.cart.entities.ItemOperationResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quantity updates of {@code operations} lines of a 100 line cart, sent as one batch or as one
+ * PATCH flow per line, over the in-memory DAOs. Every DAO call burns {@code roundTrip} tokens of
+ * CPU to stand in for the database round trip the real DAOs pay: with 0 only the domain code is
+ * compared.
+ * <p>
+ * Setting a line to the quantity it already has leaves the cart as it was, so the fixture is
+ * built once per iteration and every invocation finds the same cart.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemBatchBenchmark {
+
+    private static final String CUSTOMER_ID = "customer";
+    private static final int CART_SIZE = 100;
+
+    @Param({"1", "10", "50"})
+    private int operations;
+
+    @Param({"0", "20000"})
+    private long roundTrip;
+
+    private CartDAO cartDAO;
+    private ItemDAO itemDAO;
+    private List<ItemOperation> batch;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        CartDAO.Fake carts = new CartDAO.Fake();
+        ItemDAO.Fake items = new ItemDAO.Fake();
+        Cart cart = new Cart(CUSTOMER_ID);
+        for (int i = 0; i < CART_SIZE; i++) {
+            cart.add(items.save(new Item("item-" + i)));
+        }
+        carts.save(cart);
+        cartDAO = new RoundTripCartDAO(carts, roundTrip);
+        itemDAO = new RoundTripItemDAO(items, roundTrip);
+
+        batch = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            batch.add(new ItemOperation(ItemOperation.Type.SET_QUANTITY, new Item(new Item("item-" + i), 3)));
+        }
+    }
+
+    @Benchmark
+    public List<ItemOperationResult> batch() {
+        CartUnitOfWork unitOfWork = new CartUnitOfWork(cartDAO);
+        Cart cart = new CartResource(unitOfWork, CUSTOMER_ID).value().get();
+        ItemBatch itemBatch = new ItemBatch(cart);
+        List<ItemOperationResult> results = itemBatch.apply(batch);
+        unitOfWork.save(cart);
+        unitOfWork.flush();
+        itemDAO.saveAndDestroy(itemBatch.toSave(), itemBatch.toDestroy());
+        return results;
+    }
+
+    @Benchmark
+    public void singleItem() {
+        for (ItemOperation operation : batch) {
+            CartUnitOfWork unitOfWork = new CartUnitOfWork(cartDAO);
+            CartResource cartResource = new CartResource(unitOfWork, CUSTOMER_ID);
+            Item found = FoundItem.inCart(() -> cartResource.value().get(), operation::getItem).get();
+            Item merged = new Item(found, operation.getItem().getQuantity()).nextVersion();
+            cartResource.contents().get().update(() -> merged).run();
+            unitOfWork.flush();
+            new ItemResource(itemDAO, () -> merged).create().get();
+        }
+    }
+
+    private record RoundTripCartDAO(CartDAO cartDAO, long tokens) implements CartDAO {
+
+        @Override
+        public void delete(Cart cart) {
+            Blackhole.consumeCPU(tokens);
+            cartDAO.delete(cart);
+        }
+
+        @Override
+        public Cart save(Cart cart) {
+            Blackhole.consumeCPU(tokens);
+            return cartDAO.save(cart);
+        }
+
+        @Override
+        public List<Cart> findByCustomerId(String customerId) {
+            Blackhole.consumeCPU(tokens);
+            return cartDAO.findByCustomerId(customerId);
+        }
+
+        @Override
+        public void saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+            Blackhole.consumeCPU(tokens);
+            toSave.forEach(cartDAO::save);
+            toDelete.forEach(cartDAO::delete);
+        }
+    }
+
+    private record RoundTripItemDAO(ItemDAO itemDAO, long tokens) implements ItemDAO {
+
+        @Override
+        public Item save(Item item) {
+            Blackhole.consumeCPU(tokens);
+            return itemDAO.save(item);
+        }
+
+        @Override
+        public void destroy(Item item) {
+            Blackhole.consumeCPU(tokens);
+            itemDAO.destroy(item);
+        }
+
+        @Override
+        public Item findOne(String id) {
+            Blackhole.consumeCPU(tokens);
+            return itemDAO.findOne(id);
+        }
+
+        @Override
+        public void saveAndDestroy(Collection<Item> toSave, Collection<Item> toDestroy) {
+            Blackhole.consumeCPU(tokens);
+            toDestroy.forEach(itemDAO::destroy);
+            toSave.forEach(itemDAO::save);
+        }
+    }
+}
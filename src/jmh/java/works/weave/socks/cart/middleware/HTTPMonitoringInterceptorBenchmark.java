@@ -0,0 +1,58 @@
+package works.weave.socks.cart.middleware;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Overhead the interceptor adds to every request; run with {@code -prof gc} to check that
+ * recording does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HTTPMonitoringInterceptorBenchmark {
+
+    private HTTPMonitoringInterceptor interceptor;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        // Same distribution as configured in application.properties
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .serviceLevelObjectives(Stream.of(5, 10, 20, 30, 50, 100, 250, 500, 1000)
+                                .mapToDouble(ms -> TimeUnit.MILLISECONDS.toNanos(ms)).toArray())
+                        .percentiles(0.5, 0.95, 0.99)
+                        .build()
+                        .merge(config);
+            }
+        });
+        interceptor = new HTTPMonitoringInterceptor("carts", registry);
+        request = new MockHttpServletRequest("GET", "/carts/customer/items");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/carts/{customerId}/items");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void request() {
+        interceptor.preHandle(request, response, this);
+        interceptor.afterCompletion(request, response, this, null);
+    }
+}
@@ -0,0 +1,233 @@
+package works.weave.socks.cart.cart;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.OptimisticLockingFailureException;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-through, size and TTL bounded LRU cache in front of a {@link CartDAO}.
+ * <p>
+ * Empty lookups are cached as well (with their own TTL), so a GET on an unknown customer does
+ * not hit the database twice. Carts are copied on the way in and out: callers mutate the carts
+ * they get before saving them, and a failed save must not leave a modified cart in the cache.
+ * <p>
+ * Entries live in a {@link ConcurrentHashMap}: lookups take no lock, each write only replaces the
+ * entry of its own customer, and carts are copied outside of any lock. A load is only cached if
+ * the entry it missed is still there when it completes, so that a lookup racing with a write of
+ * the same cart does not cache stale data; writes of other carts do not prevent it. A version
+ * conflict on write drops the cached cart, so that a retry reads the current one.
+ * <p>
+ * Past {@code maxSize} entries, the first writer to notice evicts the expired ones and then the
+ * least recently read, down to 90% of {@code maxSize}, while the others carry on.
+ * <p>
+ * The cache belongs to one instance and only its own writes invalidate it: a cart written through
+ * another instance is served stale until its entry expires. It is therefore off by default.
+ */
+public class CachingCartDAO implements CartDAO {
+
+    private final CartDAO cartDAO;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** Held by the one thread evicting, never by lookups or writes. */
+    private final ReentrantLock eviction = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public CachingCartDAO(CartDAO cartDAO, int maxSize, Duration ttl, Duration negativeTtl, MeterRegistry meterRegistry) {
+        this.cartDAO = cartDAO;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.hits = Counter.builder("carts.cache.requests").tag("result", "hit")
+                .description("Cart cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("carts.cache.requests").tag("result", "miss")
+                .description("Cart cache lookups").register(meterRegistry);
+        this.evictions = Counter.builder("carts.cache.evictions")
+                .description("Carts evicted from the cache because it was full").register(meterRegistry);
+        Gauge.builder("carts.cache.size", entries, Map::size)
+                .description("Carts currently cached").register(meterRegistry);
+    }
+
+    @Override
+    public void delete(Cart cart) {
+        try {
+            cartDAO.delete(cart);
+        } catch (OptimisticLockingFailureException e) {
+            invalidate(cart.getCustomerId());
+            throw e;
+        }
+        cache(cart.getCustomerId(), List.of());
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        Cart saved;
+        try {
+            saved = cartDAO.save(cart);
+        } catch (OptimisticLockingFailureException e) {
+            invalidate(cart.getCustomerId());
+            throw e;
+        }
+        cache(saved.getCustomerId(), List.of(saved));
+        return saved;
+    }
+
+    @Override
+    public List<Cart> findByCustomerId(String customerId) {
+        Entry missed = entries.get(customerId);
+        if (missed != null && missed.isLive()) {
+            hits.increment();
+            missed.lastRead = System.nanoTime();
+            return copy(missed.carts);
+        }
+        misses.increment();
+
+        List<Cart> carts = cartDAO.findByCustomerId(customerId);
+        Entry loaded = entry(copy(carts));
+        // Any write since the miss replaced the entry it saw
+        if (entries.compute(customerId, (id, current) -> current == missed ? loaded : current) == loaded) {
+            evictIfFull();
+        }
+        return carts;
+    }
+
+    @Override
+    public void saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        try {
+            cartDAO.saveAndDelete(toSave, toDelete);
+        } catch (OptimisticLockingFailureException e) {
+            toSave.forEach(cart -> invalidate(cart.getCustomerId()));
+            toDelete.forEach(cart -> invalidate(cart.getCustomerId()));
+            throw e;
+        }
+        toDelete.forEach(cart -> cache(cart.getCustomerId(), List.of()));
+        toSave.forEach(cart -> cache(cart.getCustomerId(), List.of(cart)));
+    }
+
+    /**
+     * The atomic update does not return the whole cart, so the cached one is dropped.
+     */
+    @Override
+    public Item addItem(String customerId, Item item) {
+        try {
+            return cartDAO.addItem(customerId, item);
+        } finally {
+            invalidate(customerId);
+        }
+    }
+
+    /**
+     * Always read from the delegate, which is cheap. A cart changed through another instance would
+     * otherwise keep its old summary until the cached entry expires.
+     */
+    @Override
+    public CartSummary summary(String customerId) {
+        return cartDAO.summary(customerId);
+    }
+
+    /**
+     * Always read from the delegate, which is cheap. This revision is the ETag of the cart, so a
+     * cached one would answer 304 Not Modified for a cart changed through another instance.
+     */
+    @Override
+    public String revision(String customerId) {
+        return cartDAO.revision(customerId);
+    }
+
+    /**
+     * Streamed from the cached cart if there is one. Cached carts are never modified, so the lines
+     * can be read without copying them. A streamed cart is not cached: it may not fit.
+     */
+    @Override
+    public CartItems items(String customerId) {
+        Entry entry = entries.get(customerId);
+        if (entry != null && entry.isLive()) {
+            hits.increment();
+            entry.lastRead = System.nanoTime();
+            return entry.carts.isEmpty() ? null : CartItems.of(entry.carts.get(0));
+        }
+        misses.increment();
+        return cartDAO.items(customerId);
+    }
+
+    /**
+     * Leaves an already expired entry rather than none, so that a load that missed the previous
+     * entry is not cached.
+     */
+    public void invalidate(String customerId) {
+        entries.put(customerId, new Entry(List.of(), System.nanoTime()));
+        evictIfFull();
+    }
+
+    private void cache(String customerId, List<Cart> carts) {
+        entries.put(customerId, entry(copy(carts)));
+        evictIfFull();
+    }
+
+    private Entry entry(List<Cart> carts) {
+        return new Entry(carts, System.nanoTime() + (carts.isEmpty() ? negativeTtlNanos : ttlNanos));
+    }
+
+    private void evictIfFull() {
+        if (entries.size() <= maxSize || !eviction.tryLock()) {
+            return;
+        }
+        try {
+            // Read once: entries expire and are read again while they are sorted
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((customerId, entry) ->
+                    candidates.add(new Candidate(customerId, entry, entry.isLive(), entry.lastRead)));
+            candidates.sort(Comparator.comparing(Candidate::live).thenComparingLong(Candidate::lastRead));
+            int excess = candidates.size() - (maxSize - maxSize / 10);
+            for (int i = 0; i < excess; i++) {
+                Candidate candidate = candidates.get(i);
+                // Unless it was written again in the meantime
+                if (entries.remove(candidate.customerId(), candidate.entry()) && candidate.live()) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            eviction.unlock();
+        }
+    }
+
+    private static List<Cart> copy(List<Cart> carts) {
+        return carts.stream().map(Cart::new).toList();
+    }
+
+    private record Candidate(String customerId, Entry entry, boolean live, long lastRead) {
+    }
+
+    private static final class Entry {
+        private final List<Cart> carts;
+        private final long expiresAt;
+        /** Recency for eviction, updated without synchronization: an approximate order is enough. */
+        private volatile long lastRead;
+
+        private Entry(List<Cart> carts, long expiresAt) {
+            this.carts = carts;
+            this.expiresAt = expiresAt;
+            this.lastRead = System.nanoTime();
+        }
+
+        private boolean isLive() {
+            return expiresAt - System.nanoTime() > 0;
+        }
+    }
+}
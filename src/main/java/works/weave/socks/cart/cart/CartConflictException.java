@@ -0,0 +1,16 @@
+package works.weave.socks.cart.cart;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A cart mutation that still lost against concurrent writes after its last attempt.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class CartConflictException extends OptimisticLockingFailureException {
+
+    public CartConflictException(OptimisticLockingFailureException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
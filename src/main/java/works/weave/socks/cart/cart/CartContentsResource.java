@@ -41,6 +41,14 @@ public class CartContentsResource implements Contents<Item> {
         };
     }
 
+    @Override
+    public Runnable update(Supplier<Item> item) {
+        return () -> {
+            LOG.debug("Updating for user: {}, {}", parentCart(), item.get());
+            cartRepository.save(parentCart().update(item.get()));
+        };
+    }
+
     private Cart parentCart() {
         return parent.get().value().get();
     }
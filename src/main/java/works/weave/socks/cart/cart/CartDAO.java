@@ -1,7 +1,10 @@
 package works.weave.socks.cart.cart;
 
 import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -12,6 +15,59 @@ public interface CartDAO {
     Cart save(Cart cart);
     List<Cart> findByCustomerId(String customerId);
 
+    /**
+     * Saves and deletes several carts at once. Implementations may send them as a single batch.
+     */
+    default void saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        toSave.forEach(this::save);
+        toDelete.forEach(this::delete);
+    }
+
+    /**
+     * Adds {@code item} to the customer's cart, creating the cart if needed. If the cart already
+     * holds a line for the same item its quantity is incremented by one instead.
+     * <p>
+     * The default implementation is a plain read-modify-write; persistent implementations should
+     * override it with an atomic update.
+     *
+     * @return the resulting cart line
+     */
+    default Item addItem(String customerId, Item item) {
+        Cart cart = findByCustomerId(customerId).stream().findFirst().orElseGet(() -> new Cart(customerId));
+        Item existing = cart.line(item);
+        Item line = existing == null ? item : new Item(existing, existing.getQuantity() + 1);
+        save(cart.update(line));
+        return line;
+    }
+
+    /**
+     * The default implementation reads the whole cart; persistent implementations should only
+     * read the totals stored with it.
+     *
+     * @return the totals of the customer's cart, all zero if the customer has none
+     */
+    default CartSummary summary(String customerId) {
+        return findByCustomerId(customerId).stream().findFirst()
+                .map(CartSummary::new)
+                .orElseGet(() -> new CartSummary(customerId));
+    }
+
+    /**
+     * @return the {@link Cart#revision() revision} of the customer's cart, or null if the customer
+     * has none
+     */
+    default String revision(String customerId) {
+        return findByCustomerId(customerId).stream().findFirst().map(Cart::revision).orElse(null);
+    }
+
+    /**
+     * @return the lines of the customer's cart, to be closed once read, or null if the customer
+     * has no cart
+     */
+    default CartItems items(String customerId) {
+        return findByCustomerId(customerId).stream().findFirst().map(CartItems::of).orElse(null);
+    }
+
     class Fake implements CartDAO {
         private final Map<String, Cart> cartStore = new HashMap<>();
 
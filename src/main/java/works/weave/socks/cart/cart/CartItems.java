@@ -0,0 +1,49 @@
+package works.weave.socks.cart.cart;
+
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.Iterator;
+
+/**
+ * Lines of one cart, read one at a time, so that a large cart can be written out without ever
+ * being held in memory. Must be closed, even when not read to the end.
+ */
+public interface CartItems extends Iterator<Item>, AutoCloseable {
+
+    /**
+     * @return the {@link Cart#revision() revision} of the cart the lines belong to, known before
+     * the first line is read
+     */
+    String revision();
+
+    @Override
+    void close();
+
+    /**
+     * @return the lines of a cart already in memory
+     */
+    static CartItems of(Cart cart) {
+        Iterator<Item> items = cart.getItems().iterator();
+        return new CartItems() {
+            @Override
+            public String revision() {
+                return cart.revision();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                return items.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
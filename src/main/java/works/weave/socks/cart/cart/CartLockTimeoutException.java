@@ -0,0 +1,12 @@
+package works.weave.socks.cart.cart;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CartLockTimeoutException extends RuntimeException {
+
+    public CartLockTimeoutException(String customerId) {
+        super("Timed out waiting for the cart lock of customer " + customerId);
+    }
+}
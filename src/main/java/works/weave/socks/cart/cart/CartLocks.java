@@ -0,0 +1,131 @@
+package works.weave.socks.cart.cart;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks serializing cart mutations per customer.
+ * <p>
+ * Customers are hashed onto a fixed number of stripes, so memory stays bounded and independent
+ * customers rarely contend. Locks are acquired with a timeout and, when several customers are
+ * involved, in stripe order so that two merges can never deadlock.
+ */
+public class CartLocks {
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutNanos;
+    private final Timer waitTimer;
+    private final Counter timeouts;
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    public CartLocks(int stripes, Duration timeout, MeterRegistry meterRegistry) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        Arrays.setAll(this.stripes, i -> new ReentrantLock());
+        this.timeoutNanos = timeout.toNanos();
+        this.waitTimer = Timer.builder("carts.lock.wait")
+                .description("Time spent waiting for a cart lock")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("carts.lock.timeouts")
+                .description("Cart lock acquisitions that timed out")
+                .register(meterRegistry);
+    }
+
+    private CartLocks() {
+        this.stripes = new ReentrantLock[0];
+        this.timeoutNanos = 0;
+        this.waitTimer = null;
+        this.timeouts = null;
+    }
+
+    /**
+     * Locks that never block, for when cart mutations do not need to be serialized.
+     */
+    public static CartLocks disabled() {
+        return new CartLocks();
+    }
+
+    public void withLock(String customerId, Runnable action) {
+        withLock(customerId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T withLock(String customerId, Supplier<T> action) {
+        if (stripes.length == 0) {
+            return action.get();
+        }
+        ReentrantLock lock = stripe(customerId);
+        acquire(lock, customerId);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code action} holding the locks of both customers.
+     */
+    public void withLocks(String customerId, String otherCustomerId, Runnable action) {
+        if (stripes.length == 0) {
+            action.run();
+            return;
+        }
+        int index = index(customerId);
+        int otherIndex = index(otherCustomerId);
+        if (index == otherIndex) {
+            withLock(customerId, action);
+            return;
+        }
+        ReentrantLock first = stripes[Math.min(index, otherIndex)];
+        ReentrantLock second = stripes[Math.max(index, otherIndex)];
+        acquire(first, index < otherIndex ? customerId : otherCustomerId);
+        try {
+            acquire(second, index < otherIndex ? otherCustomerId : customerId);
+            try {
+                action.run();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private void acquire(ReentrantLock lock, String customerId) {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            timeouts.increment();
+            throw new CartLockTimeoutException(customerId);
+        }
+    }
+
+    private ReentrantLock stripe(String customerId) {
+        return stripes[index(customerId)];
+    }
+
+    private int index(String customerId) {
+        int hash = customerId.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,48 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Background job rewriting legacy DBRef carts to the embedded layout, one batch at a time.
+ */
+public class CartMigrator implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CartMigrator.class);
+
+    private final MongoCartDAO cartDAO;
+    private final int batchSize;
+
+    public CartMigrator(MongoCartDAO cartDAO, int batchSize) {
+        this.cartDAO = cartDAO;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run() {
+        long migrated = 0;
+        int batchMigrated;
+        do {
+            List<Document> batch = cartDAO.cartCollection()
+                    .find(Filters.exists(MongoCartDAO.ITEMS + ".$ref"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            batchMigrated = 0;
+            for (Document document : batch) {
+                if (cartDAO.migrate(document)) {
+                    batchMigrated++;
+                }
+            }
+            migrated += batchMigrated;
+            LOG.debug("Migrated {} of {} legacy carts in batch", batchMigrated, batch.size());
+            // A batch where nothing could be rewritten means the remaining carts are being updated
+            // concurrently; they will be migrated lazily on their next read.
+        } while (batchMigrated > 0 && !Thread.currentThread().isInterrupted());
+        LOG.info("Cart migration finished: {} carts moved to embedded lines", migrated);
+    }
+}
@@ -37,9 +37,10 @@ public class CartResource implements Resource<Cart>, HasContents<CartContentsRes
 
     @Override
     public Runnable merge(Cart toMerge) {
-        return () -> toMerge.getItems().forEach(item ->
-                contents().get().add(() -> item).run()
-        );
+        return () -> {
+            cartRepository.save(value().get().merge(toMerge));
+            cartRepository.delete(toMerge);
+        };
     }
 
     @Override
@@ -0,0 +1,11 @@
+package works.weave.socks.cart.cart;
+
+/**
+ * How cart lines are persisted in the cart document.
+ */
+public enum CartStorageMode {
+    /** Lines are stored as sub-documents of the cart and loaded in a single read. */
+    EMBEDDED,
+    /** Legacy layout: lines live in the item collection and the cart holds DBRefs to them. */
+    DBREF
+}
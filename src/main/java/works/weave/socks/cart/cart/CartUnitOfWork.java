@@ -0,0 +1,72 @@
+package works.weave.socks.cart.cart;
+
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Identity map and unit of work over a {@link CartDAO}, meant to live for a single request.
+ * <p>
+ * Each customer's cart is loaded at most once; {@link #save(Cart)} and {@link #delete(Cart)} only
+ * record the change, and {@link #flush()} writes every pending change in one pass at the end.
+ */
+public class CartUnitOfWork implements CartDAO {
+
+    private final CartDAO cartDAO;
+    private final Map<String, List<Cart>> identityMap = new HashMap<>();
+    private final Map<String, Cart> dirty = new LinkedHashMap<>();
+    private final Map<String, Cart> deleted = new LinkedHashMap<>();
+
+    public CartUnitOfWork(CartDAO cartDAO) {
+        this.cartDAO = cartDAO;
+    }
+
+    @Override
+    public void delete(Cart cart) {
+        identityMap.put(cart.getCustomerId(), List.of());
+        dirty.remove(cart.getCustomerId());
+        deleted.put(cart.getCustomerId(), cart);
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        identityMap.put(cart.getCustomerId(), List.of(cart));
+        deleted.remove(cart.getCustomerId());
+        dirty.put(cart.getCustomerId(), cart);
+        return cart;
+    }
+
+    @Override
+    public List<Cart> findByCustomerId(String customerId) {
+        return identityMap.computeIfAbsent(customerId, cartDAO::findByCustomerId);
+    }
+
+    /**
+     * Atomic updates bypass the identity map: pending changes are flushed first and the cached
+     * cart is dropped so that it is re-read if needed.
+     */
+    @Override
+    public Item addItem(String customerId, Item item) {
+        flush();
+        identityMap.remove(customerId);
+        return cartDAO.addItem(customerId, item);
+    }
+
+    /**
+     * Writes all pending saves and deletes with a single {@link CartDAO#saveAndDelete} call.
+     */
+    public void flush() {
+        List<Cart> toDelete = deleted.values().stream()
+                .filter(cart -> cart.getId() != null)
+                .toList();
+        if (!dirty.isEmpty() || !toDelete.isEmpty()) {
+            cartDAO.saveAndDelete(List.copyOf(dirty.values()), toDelete);
+        }
+        deleted.clear();
+        dirty.clear();
+    }
+}
@@ -0,0 +1,213 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-your-writes in front of a {@link MongoCartDAO} that reads from secondaries.
+ * <p>
+ * Every call runs in its own causally consistent session. The operation and cluster times the
+ * session ends with are kept per customer, and the next session of the same customer starts from
+ * them, so a secondary only answers once it has applied that customer's last write. Customers
+ * without a recent write read from any secondary without waiting.
+ * <p>
+ * Times are only kept for {@code tokenTtl}, which must exceed the replication lag, and in the
+ * memory of this instance: a customer served by another instance gets no guarantee. Deploy it on
+ * a single instance, or behind a load balancer that keeps each customer on the same instance.
+ * Requires a replica set, and a {@code majority} write concern to survive a failover: a write
+ * acknowledged by the primary alone can be rolled back.
+ */
+public class CausalCartDAO implements CartDAO {
+
+    private static final ClientSessionOptions CAUSAL = ClientSessionOptions.builder().causallyConsistent(true).build();
+
+    private record Token(BsonTimestamp operationTime, BsonDocument clusterTime, long expiresAt) {
+    }
+
+    private final MongoCartDAO cartDAO;
+    private final MongoDatabaseFactory databaseFactory;
+    private final long tokenTtlNanos;
+    private final Map<String, Token> tokens;
+
+    public CausalCartDAO(MongoCartDAO cartDAO, MongoDatabaseFactory databaseFactory, int maxCustomers, Duration tokenTtl,
+                         MeterRegistry meterRegistry) {
+        this.cartDAO = cartDAO;
+        this.databaseFactory = databaseFactory;
+        this.tokenTtlNanos = tokenTtl.toNanos();
+        this.tokens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Token> eldest) {
+                return size() > maxCustomers;
+            }
+        };
+        Gauge.builder("carts.db.causal.tokens", this, CausalCartDAO::size)
+                .description("Customers whose next reads wait for their last write").register(meterRegistry);
+    }
+
+    @Override
+    public void delete(Cart cart) {
+        inSession(List.of(cart.getCustomerId()), dao -> {
+            dao.delete(cart);
+            return null;
+        });
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        return inSession(List.of(cart.getCustomerId()), dao -> dao.save(cart));
+    }
+
+    @Override
+    public List<Cart> findByCustomerId(String customerId) {
+        return inSession(List.of(customerId), dao -> dao.findByCustomerId(customerId));
+    }
+
+    @Override
+    public void saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        List<String> customerIds = new ArrayList<>();
+        toSave.forEach(cart -> customerIds.add(cart.getCustomerId()));
+        toDelete.forEach(cart -> customerIds.add(cart.getCustomerId()));
+        inSession(customerIds, dao -> {
+            dao.saveAndDelete(toSave, toDelete);
+            return null;
+        });
+    }
+
+    @Override
+    public Item addItem(String customerId, Item item) {
+        return inSession(List.of(customerId), dao -> dao.addItem(customerId, item));
+    }
+
+    @Override
+    public CartSummary summary(String customerId) {
+        return inSession(List.of(customerId), dao -> dao.summary(customerId));
+    }
+
+    @Override
+    public String revision(String customerId) {
+        return inSession(List.of(customerId), dao -> dao.revision(customerId));
+    }
+
+    /**
+     * The session stays open until the lines are closed, as the cursor reads within it.
+     */
+    @Override
+    public CartItems items(String customerId) {
+        List<String> customerIds = List.of(customerId);
+        ClientSession session = start(customerIds);
+        CartItems items;
+        try {
+            items = cartDAO.withSession(session).items(customerId);
+        } catch (RuntimeException e) {
+            end(customerIds, session);
+            throw e;
+        }
+        if (items == null) {
+            end(customerIds, session);
+            return null;
+        }
+        return new CartItems() {
+            @Override
+            public String revision() {
+                return items.revision();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                return items.next();
+            }
+
+            @Override
+            public void close() {
+                try {
+                    items.close();
+                } finally {
+                    end(customerIds, session);
+                }
+            }
+        };
+    }
+
+    private <T> T inSession(List<String> customerIds, Function<MongoCartDAO, T> operation) {
+        ClientSession session = start(customerIds);
+        try {
+            return operation.apply(cartDAO.withSession(session));
+        } finally {
+            // Also after a failure: a version conflict still tells how recent the retry must read
+            end(customerIds, session);
+        }
+    }
+
+    private ClientSession start(List<String> customerIds) {
+        ClientSession session = databaseFactory.getSession(CAUSAL);
+        for (String customerId : customerIds) {
+            Token token = token(customerId);
+            if (token != null) {
+                session.advanceClusterTime(token.clusterTime());
+                session.advanceOperationTime(token.operationTime());
+            }
+        }
+        return session;
+    }
+
+    private void end(List<String> customerIds, ClientSession session) {
+        try {
+            remember(customerIds, session);
+        } finally {
+            session.close();
+        }
+    }
+
+    private Token token(String customerId) {
+        synchronized (tokens) {
+            Token token = tokens.get(customerId);
+            if (token != null && System.nanoTime() - token.expiresAt() > 0) {
+                tokens.remove(customerId);
+                return null;
+            }
+            return token;
+        }
+    }
+
+    private void remember(List<String> customerIds, ClientSession session) {
+        if (session.getOperationTime() == null || session.getClusterTime() == null) {
+            return;
+        }
+        Token token = new Token(session.getOperationTime(), session.getClusterTime(), System.nanoTime() + tokenTtlNanos);
+        synchronized (tokens) {
+            for (String customerId : customerIds) {
+                tokens.merge(customerId, token, (previous, next) ->
+                        previous.operationTime().compareTo(next.operationTime()) > 0
+                                ? new Token(previous.operationTime(), previous.clusterTime(), next.expiresAt())
+                                : next);
+            }
+        }
+    }
+
+    private int size() {
+        synchronized (tokens) {
+            return tokens.size();
+        }
+    }
+}
@@ -16,4 +16,8 @@ public interface Contents<T> {
     default Runnable delete(Supplier<Item> item) {
         throw new UnsupportedOperationException("Delete operation not implemented");
     }
+
+    default Runnable update(Supplier<Item> item) {
+        throw new UnsupportedOperationException("Update operation not implemented");
+    }
 }
@@ -0,0 +1,129 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup job creating the indexes declared with {@code @Indexed} on the stored entities, then
+ * checking with {@code explain} that the hot cart queries do not scan the collection.
+ * <p>
+ * Index creation is idempotent. An index that cannot be built, typically the unique customer
+ * index over duplicate carts, and a query planned as a {@code COLLSCAN} are handled per
+ * {@link Mode}, {@link Mode#FAIL} by default: in {@link Mode#WARN}, duplicate carts leave the service
+ * running without the unique index, which then no longer prevents new duplicates. An unreachable
+ * database only logs a warning: the job runs again on next start.
+ * <p>
+ * Cart lines are always looked up in memory once the cart is loaded, so they need no index.
+ */
+public class IndexManager implements Runnable {
+
+    public enum Mode {
+        WARN,
+        FAIL
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexManager.class);
+    private static final String COLLSCAN = "COLLSCAN";
+    private static final String SAMPLE_CUSTOMER_ID = "index-check";
+
+    private final MongoTemplate mongoTemplate;
+    private final Mode mode;
+
+    public IndexManager(MongoTemplate mongoTemplate, Mode mode) {
+        this.mongoTemplate = mongoTemplate;
+        this.mode = mode;
+    }
+
+    @Override
+    public void run() {
+        try {
+            createIndexes(Cart.class);
+            createIndexes(Item.class);
+            checkPlans();
+        } catch (DataAccessResourceFailureException e) {
+            LOG.warn("Database unreachable, indexes not verified: {}", e.getMessage());
+        }
+    }
+
+    private static Map<String, Bson> hotQueries() {
+        Map<String, Bson> queries = new LinkedHashMap<>();
+        queries.put("cart by customer", Filters.eq(MongoCartDAO.CUSTOMER_ID, SAMPLE_CUSTOMER_ID));
+        queries.put("embedded cart by customer", MongoCartDAO.embeddedCart(SAMPLE_CUSTOMER_ID));
+        return queries;
+    }
+
+    private void createIndexes(Class<?> entity) {
+        IndexResolver resolver = IndexResolver.create((MongoMappingContext) mongoTemplate.getConverter().getMappingContext());
+        for (IndexDefinition index : resolver.resolveIndexFor(entity)) {
+            try {
+                String name = mongoTemplate.indexOps(entity).ensureIndex(index);
+                LOG.info("Index {} on {} ready", name, mongoTemplate.getCollectionName(entity));
+            } catch (DataAccessResourceFailureException e) {
+                throw e;
+            } catch (DataAccessException e) {
+                report("Index " + index.getIndexKeys().toJson() + " on " + mongoTemplate.getCollectionName(entity)
+                        + " could not be created: " + e.getMessage());
+            }
+        }
+    }
+
+    void checkPlans() {
+        String collection = mongoTemplate.getCollectionName(Cart.class);
+        hotQueries().forEach((name, filter) -> {
+            BsonDocument query = filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+            Document explain = mongoTemplate.executeCommand(new Document("explain",
+                    new Document("find", collection).append("filter", query))
+                    .append("verbosity", "queryPlanner"));
+            List<String> stages = new ArrayList<>();
+            stages(explain.get("queryPlanner"), stages);
+            if (stages.contains(COLLSCAN)) {
+                report("Query '" + name + "' " + query.toJson() + " scans " + collection + ": " + stages);
+            } else {
+                LOG.debug("Query '{}' on {} planned as {}", name, collection, stages);
+            }
+        });
+    }
+
+    /**
+     * Collects the stages of a plan, whatever the nesting of the server version that planned it.
+     */
+    private static void stages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.forEach((key, value) -> {
+                if (!"rejectedPlans".equals(key)) {
+                    stages(value, stages);
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(element -> stages(element, stages));
+        }
+    }
+
+    private void report(String problem) {
+        if (mode == Mode.FAIL) {
+            throw new IllegalStateException(problem);
+        }
+        LOG.warn(problem);
+    }
+}
@@ -0,0 +1,92 @@
+package works.weave.socks.cart.cart;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Times every call to the wrapped {@link CartDAO}, failed ones included, so that request latency
+ * can be split between the database and the application.
+ */
+public class MeteredCartDAO implements CartDAO {
+
+    public static final String METRIC_NAME = "carts.dao";
+
+    private final CartDAO cartDAO;
+    private final Timer delete;
+    private final Timer save;
+    private final Timer findByCustomerId;
+    private final Timer saveAndDelete;
+    private final Timer addItem;
+    private final Timer summary;
+    private final Timer revision;
+    private final Timer items;
+
+    public MeteredCartDAO(CartDAO cartDAO, MeterRegistry meterRegistry) {
+        this.cartDAO = cartDAO;
+        this.delete = timer("delete", meterRegistry);
+        this.save = timer("save", meterRegistry);
+        this.findByCustomerId = timer("findByCustomerId", meterRegistry);
+        this.saveAndDelete = timer("saveAndDelete", meterRegistry);
+        this.addItem = timer("addItem", meterRegistry);
+        this.summary = timer("summary", meterRegistry);
+        this.revision = timer("revision", meterRegistry);
+        this.items = timer("items", meterRegistry);
+    }
+
+    private static Timer timer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder(METRIC_NAME)
+                .description("Duration of data access calls")
+                .tag("dao", "cart")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void delete(Cart cart) {
+        delete.record(() -> cartDAO.delete(cart));
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        return save.record(() -> cartDAO.save(cart));
+    }
+
+    @Override
+    public List<Cart> findByCustomerId(String customerId) {
+        return findByCustomerId.record(() -> cartDAO.findByCustomerId(customerId));
+    }
+
+    @Override
+    public void saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        saveAndDelete.record(() -> cartDAO.saveAndDelete(toSave, toDelete));
+    }
+
+    @Override
+    public Item addItem(String customerId, Item item) {
+        return addItem.record(() -> cartDAO.addItem(customerId, item));
+    }
+
+    @Override
+    public CartSummary summary(String customerId) {
+        return summary.record(() -> cartDAO.summary(customerId));
+    }
+
+    @Override
+    public String revision(String customerId) {
+        return revision.record(() -> cartDAO.revision(customerId));
+    }
+
+    /**
+     * Only the opening of the cursor is timed: the lines are read at the pace they are written out.
+     */
+    @Override
+    public CartItems items(String customerId) {
+        return items.record(() -> cartDAO.items(customerId));
+    }
+}
@@ -0,0 +1,655 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.DBRef;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UnwindOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.item.MongoItemDAO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link CartDAO} backed by {@link MongoTemplate}.
+ * <p>
+ * Carts are always read as raw documents so that both layouts can be served: embedded lines are
+ * mapped directly, while legacy DBRef lines are resolved with a single {@code $in} query per cart.
+ * In {@link CartStorageMode#EMBEDDED} mode legacy carts can be rewritten to the embedded layout the
+ * first time they are read.
+ * <p>
+ * Cart lookups use the configured read preference and every cart write the configured write
+ * concern. Reads that are part of a write, such as the legacy lookup of {@link #addItem}, always
+ * go to the primary.
+ * <p>
+ * A customer has a single cart only because of the unique index on its id: carts are created by
+ * upserts, which concurrent requests would otherwise each turn into a cart. The index is ensured
+ * before the first cart creation, whether or not the {@link IndexManager} has run.
+ */
+public class MongoCartDAO implements CartDAO {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoCartDAO.class);
+
+    static final String ID = "_id";
+    static final String CUSTOMER_ID = "customerId";
+    static final String ITEMS = "items";
+    static final String ITEM_ID = "itemId";
+    static final String QUANTITY = "quantity";
+    static final String VERSION = "version";
+    static final String UNIT_PRICE = "unitPrice";
+    static final String ITEM_COUNT = "itemCount";
+    static final String LINE_COUNT = "lineCount";
+    static final String SUBTOTAL_CENTS = "subtotalCents";
+
+    /** Lines fetched per round trip when {@link #items streaming} a cart. */
+    static final int ITEMS_BATCH_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final CartStorageMode storageMode;
+    private final boolean migrateOnRead;
+    private final ReadPreference readPreference;
+    private final WriteConcern writeConcern;
+    private final MongoItemDAO itemDAO;
+    /** Set once the unique customer index is known to exist, shared by the session DAOs. */
+    private final AtomicBoolean customerIndex;
+
+    public MongoCartDAO(MongoTemplate mongoTemplate, CartStorageMode storageMode, boolean migrateOnRead) {
+        this(mongoTemplate, storageMode, migrateOnRead, ReadPreference.primary(), WriteConcern.ACKNOWLEDGED);
+    }
+
+    public MongoCartDAO(MongoTemplate mongoTemplate, CartStorageMode storageMode, boolean migrateOnRead,
+                        ReadPreference readPreference, WriteConcern writeConcern) {
+        this(mongoTemplate, storageMode, migrateOnRead, readPreference, writeConcern, new AtomicBoolean());
+    }
+
+    private MongoCartDAO(MongoTemplate mongoTemplate, CartStorageMode storageMode, boolean migrateOnRead,
+                         ReadPreference readPreference, WriteConcern writeConcern, AtomicBoolean customerIndex) {
+        this.mongoTemplate = mongoTemplate;
+        this.storageMode = storageMode;
+        this.migrateOnRead = migrateOnRead;
+        this.readPreference = readPreference;
+        this.writeConcern = writeConcern;
+        this.itemDAO = new MongoItemDAO(mongoTemplate);
+        this.customerIndex = customerIndex;
+    }
+
+    /**
+     * @return a DAO with the same settings whose commands are all sent within {@code session}
+     */
+    MongoCartDAO withSession(ClientSession session) {
+        return new MongoCartDAO(mongoTemplate.withSession(session), storageMode, migrateOnRead, readPreference, writeConcern,
+                customerIndex);
+    }
+
+    /**
+     * @throws OptimisticLockingFailureException if the cart was modified or deleted since it was read
+     */
+    @Override
+    public void delete(Cart cart) {
+        if (cartCollection().deleteOne(versioned(cart)).getDeletedCount() == 0) {
+            throw conflict(cart);
+        }
+    }
+
+    /**
+     * Compare-and-set write: the cart is only replaced if its stored version is still the one
+     * that was read, and the version is then incremented.
+     *
+     * @throws OptimisticLockingFailureException if the cart was modified since it was read
+     */
+    @Override
+    public Cart save(Cart cart) {
+        boolean isNew = cart.getId() == null;
+        if (isNew) {
+            ensureCustomerIndex();
+        }
+        Document document = document(cart);
+        try {
+            UpdateResult result = cartCollection().replaceOne(versioned(cart), document, new ReplaceOptions().upsert(isNew));
+            if (result.getMatchedCount() == 0 && result.getUpsertedId() == null) {
+                throw conflict(cart);
+            }
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                throw conflict(cart);
+            }
+            throw e;
+        }
+        cart.setVersion(document.getLong(VERSION));
+        return cart;
+    }
+
+    @Override
+    public List<Cart> findByCustomerId(String customerId) {
+        List<Cart> carts = new ArrayList<>();
+        for (Document document : cartReads().find(Filters.eq(CUSTOMER_ID, customerId))) {
+            carts.add(read(document));
+        }
+        return carts;
+    }
+
+    /**
+     * Reads only the totals stored with the cart. Carts stored before totals were fall back to a
+     * full read.
+     */
+    @Override
+    public CartSummary summary(String customerId) {
+        Document totals = cartReads().find(Filters.eq(CUSTOMER_ID, customerId))
+                .projection(Projections.include(ITEM_COUNT, LINE_COUNT, SUBTOTAL_CENTS))
+                .first();
+        if (totals == null) {
+            return new CartSummary(customerId);
+        }
+        CartSummary summary = summary(customerId, totals);
+        return summary != null ? summary : CartDAO.super.summary(customerId);
+    }
+
+    /**
+     * Reads only the id and version of the cart.
+     */
+    @Override
+    public String revision(String customerId) {
+        Document cart = cartReads().find(Filters.eq(CUSTOMER_ID, customerId))
+                .projection(Projections.include(ID, VERSION))
+                .first();
+        return cart == null ? null : Cart.revision(cart.get(ID), cart.get(VERSION));
+    }
+
+    /**
+     * Streams the lines of an embedded cart from a cursor over the cart unwound to one document
+     * per line, so that only a batch of lines is held at a time. Legacy carts, whose lines must be
+     * resolved, are read whole.
+     */
+    @Override
+    public CartItems items(String customerId) {
+        MongoCursor<Document> cursor = cartReads().aggregate(List.of(
+                        Aggregates.match(Filters.eq(CUSTOMER_ID, customerId)),
+                        Aggregates.limit(1),
+                        Aggregates.project(Projections.include(ID, VERSION, ITEMS)),
+                        Aggregates.unwind("$" + ITEMS, new UnwindOptions().preserveNullAndEmptyArrays(true))))
+                .batchSize(ITEMS_BATCH_SIZE)
+                .cursor();
+        if (!cursor.hasNext()) {
+            cursor.close();
+            return null;
+        }
+        Document first = cursor.next();
+        if (first.get(ITEMS) instanceof DBRef) {
+            cursor.close();
+            return CartDAO.super.items(customerId);
+        }
+        return new StreamedItems(first, cursor);
+    }
+
+    /**
+     * @return the summary of a cart document, or null if it has no stored totals
+     */
+    static CartSummary summary(String customerId, Document totals) {
+        if (!totals.containsKey(LINE_COUNT)) {
+            return null;
+        }
+        return new CartSummary(customerId,
+                totals.get(ITEM_COUNT, Number.class).intValue(),
+                totals.get(LINE_COUNT, Number.class).intValue(),
+                totals.get(SUBTOTAL_CENTS, Number.class).longValue() / 100.0);
+    }
+
+    /**
+     * In embedded mode the add-or-increment is a single {@code findOneAndUpdate} with an update
+     * pipeline, so concurrent POSTs for the same customer are serialized by the document write.
+     * Only a missing or not yet migrated cart costs extra round trips.
+     *
+     * @throws OptimisticLockingFailureException if the cart kept changing under the update, for
+     *                                           instance when a concurrent write prevented its migration
+     */
+    @Override
+    public Item addItem(String customerId, Item item) {
+        if (storageMode == CartStorageMode.DBREF) {
+            return addItemWithReferences(customerId, item);
+        }
+        List<Bson> addOrIncrement = addOrIncrement(item.getItemId(), line(mongoTemplate.getConverter(), item));
+
+        Bson embeddedCart = embeddedCart(customerId);
+        Document cart = cartCollection().findOneAndUpdate(embeddedCart, addOrIncrement,
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        if (cart == null) {
+            Document legacy = cartCollection().find(Filters.eq(CUSTOMER_ID, customerId)).first();
+            if (legacy != null) {
+                migrate(legacy);
+            } else {
+                ensureCustomerIndex();
+            }
+            try {
+                cart = cartCollection().findOneAndUpdate(legacy == null ? Filters.eq(CUSTOMER_ID, customerId) : embeddedCart,
+                        addOrIncrement,
+                        new FindOneAndUpdateOptions().upsert(legacy == null).returnDocument(ReturnDocument.AFTER));
+            } catch (MongoCommandException e) {
+                if (ErrorCategory.fromErrorCode(e.getErrorCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                // Another request created the cart first
+                cart = cartCollection().findOneAndUpdate(embeddedCart, addOrIncrement,
+                        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+            }
+            if (cart == null) {
+                // Still not embedded: the migration lost against a concurrent write
+                throw conflict(customerId);
+            }
+        }
+        return line(cart, item);
+    }
+
+    /**
+     * Sends the saves as one bulk write, then the deletes as another, only once every save has
+     * won. Every write is version-checked like {@link #save(Cart)}. The two are not atomic: when a
+     * delete loses after the saves were written, the call fails with the saves applied. Callers
+     * retry it, which {@link Cart#merge(Cart)} makes safe.
+     *
+     * @throws OptimisticLockingFailureException if one of the carts was modified since it was read
+     */
+    @Override
+    public void saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        List<WriteModel<Document>> saves = new ArrayList<>();
+        List<Document> documents = new ArrayList<>();
+        for (Cart cart : toSave) {
+            boolean isNew = cart.getId() == null;
+            if (isNew) {
+                ensureCustomerIndex();
+            }
+            Document document = document(cart);
+            documents.add(document);
+            saves.add(new ReplaceOneModel<>(versioned(cart), document, new ReplaceOptions().upsert(isNew)));
+        }
+        List<WriteModel<Document>> deletes = new ArrayList<>();
+        for (Cart cart : toDelete) {
+            deletes.add(new DeleteOneModel<>(versioned(cart)));
+        }
+
+        if (!saves.isEmpty()) {
+            BulkWriteResult saved = bulkWrite(saves, toSave, toDelete);
+            if (saved.getMatchedCount() + saved.getUpserts().size() < toSave.size()) {
+                throw concurrentlyModified(toSave, toDelete);
+            }
+            Iterator<Document> written = documents.iterator();
+            toSave.forEach(cart -> cart.setVersion(written.next().getLong(VERSION)));
+        }
+        if (!deletes.isEmpty() && bulkWrite(deletes, toSave, toDelete).getDeletedCount() < toDelete.size()) {
+            throw concurrentlyModified(toSave, toDelete);
+        }
+    }
+
+    private BulkWriteResult bulkWrite(List<WriteModel<Document>> writes, Collection<Cart> toSave, Collection<Cart> toDelete) {
+        try {
+            return cartCollection().bulkWrite(writes);
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteErrors().stream().anyMatch(error -> error.getCategory() == ErrorCategory.DUPLICATE_KEY)) {
+                throw new OptimisticLockingFailureException(concurrentlyModified(toSave, toDelete).getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    static OptimisticLockingFailureException concurrentlyModified(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        return new OptimisticLockingFailureException("Carts were modified concurrently: " + toSave + ", " + toDelete);
+    }
+
+    /**
+     * Rewrites a legacy cart document to the embedded layout. The update only applies if the lines
+     * are still the references that were resolved, so a concurrent write is never overwritten.
+     *
+     * @return true if the document was rewritten
+     */
+    boolean migrate(Document document) {
+        List<Object> lines = lines(document);
+        if (!hasReferences(lines)) {
+            return false;
+        }
+        List<Object> embedded = resolve(lines);
+        long modified = cartCollection().updateOne(
+                Filters.and(Filters.eq(ID, document.get(ID)), Filters.eq(ITEMS, lines)),
+                Updates.set(ITEMS, embedded)).getModifiedCount();
+        LOG.debug("Migrated cart {} to embedded lines: {}", document.get(ID), modified > 0);
+        return modified > 0;
+    }
+
+    /**
+     * Creates the unique customer index if this DAO has not seen it yet. Idempotent, and declared
+     * like {@code @Indexed} on {@link Cart#getCustomerId()} so that both describe the same index.
+     */
+    private void ensureCustomerIndex() {
+        if (!customerIndex.get()) {
+            cartCollection().createIndex(Indexes.ascending(CUSTOMER_ID), customerIndexOptions());
+            customerIndex.set(true);
+        }
+    }
+
+    static IndexOptions customerIndexOptions() {
+        return new IndexOptions().unique(true).name(CUSTOMER_ID);
+    }
+
+    /**
+     * @return the filter matching the customer's cart if it is in the embedded layout
+     */
+    static Bson embeddedCart(String customerId) {
+        return Filters.and(Filters.eq(CUSTOMER_ID, customerId), Filters.not(Filters.exists(ITEMS + ".$ref")));
+    }
+
+    MongoCollection<Document> cartCollection() {
+        return database().getCollection(mongoTemplate.getCollectionName(Cart.class)).withWriteConcern(writeConcern);
+    }
+
+    /**
+     * Unlike {@link MongoTemplate#getDb()}, bound to the session of a {@link #withSession session}
+     * template, so that the collections used for raw commands are as well.
+     */
+    private MongoDatabase database() {
+        return mongoTemplate.getMongoDatabaseFactory().getMongoDatabase();
+    }
+
+    private MongoCollection<Document> cartReads() {
+        return cartCollection().withReadPreference(readPreference);
+    }
+
+    private Cart read(Document document) {
+        List<Object> lines = lines(document);
+        if (hasReferences(lines)) {
+            if (storageMode == CartStorageMode.EMBEDDED && migrateOnRead) {
+                migrate(document);
+            }
+            document.put(ITEMS, resolve(lines));
+            // Quantities of referenced lines may have changed since the totals were stored
+            Cart cart = mongoTemplate.getConverter().read(Cart.class, document);
+            cart.setItems(cart.getItems());
+            return cart;
+        }
+        return counted(mongoTemplate.getConverter().read(Cart.class, document));
+    }
+
+    /**
+     * Recomputes the totals of a cart stored before totals were, which reads as having no lines.
+     */
+    static Cart counted(Cart cart) {
+        if (cart.getLineCount() != cart.getItems().size()) {
+            cart.setItems(cart.getItems());
+        }
+        return cart;
+    }
+
+    /**
+     * Lines of an unwound cart. The odd reference left in an embedded cart is resolved on its
+     * own; a dangling one is skipped, like in {@link #resolve}.
+     */
+    private final class StreamedItems implements CartItems {
+
+        private final String revision;
+        private final MongoCursor<Document> cursor;
+        private Document first;
+        private Item next;
+
+        StreamedItems(Document first, MongoCursor<Document> cursor) {
+            this.revision = Cart.revision(first.get(ID), first.get(VERSION));
+            this.first = first;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public String revision() {
+            return revision;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && (first != null || cursor.hasNext())) {
+                Document row = first != null ? first : cursor.next();
+                first = null;
+                next = item(row.get(ITEMS));
+            }
+            return next != null;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Item item = next;
+            next = null;
+            return item;
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+
+        private Item item(Object line) {
+            if (line instanceof DBRef ref) {
+                line = database().getCollection(ref.getCollectionName()).find(Filters.eq(ID, ref.getId())).first();
+            }
+            return line instanceof Document document ? mongoTemplate.getConverter().read(Item.class, document) : null;
+        }
+    }
+
+    /**
+     * Read-modify-write of the whole cart, version-checked like {@link #save(Cart)}, so that a
+     * concurrent add fails and is retried instead of pushing a second line for the item or losing
+     * an increment. The item of a new line is inserted with the cart; an incremented one is
+     * written after it, like the controllers write items.
+     *
+     * @throws OptimisticLockingFailureException if the cart was modified, or created, concurrently
+     */
+    private Item addItemWithReferences(String customerId, Item item) {
+        Document stored = cartCollection().find(Filters.eq(CUSTOMER_ID, customerId)).first();
+        Cart cart = stored == null ? new Cart(customerId) : read(stored);
+        Item existing = cart.line(item);
+        if (existing == null) {
+            save(cart.add(item));
+            return item;
+        }
+        Item incremented = new Item(existing, existing.getQuantity() + 1).nextVersion();
+        save(cart.update(incremented));
+        return itemDAO.save(incremented);
+    }
+
+    private Item line(Document cart, Item item) {
+        return line(mongoTemplate.getConverter(), cart, item);
+    }
+
+    /**
+     * Converts {@code item} to an embedded cart line. Assigns an id to new lines.
+     */
+    static Document line(MongoConverter converter, Item item) {
+        if (item.getId() == null) {
+            item.setId(new ObjectId().toHexString());
+        }
+        Document line = new Document();
+        converter.write(item, line);
+        line.remove("_class");
+        return line;
+    }
+
+    /**
+     * Reads the line for {@code item} back from an updated cart document.
+     */
+    static Item line(MongoConverter converter, Document cart, Item item) {
+        if (cart == null) {
+            throw new IllegalStateException("Cart could not be updated for item " + item.getItemId());
+        }
+        return lines(cart).stream()
+                .filter(Document.class::isInstance)
+                .map(Document.class::cast)
+                .filter(line -> item.getItemId().equals(line.getString(ITEM_ID)))
+                .findFirst()
+                .map(line -> converter.read(Item.class, line))
+                .orElseThrow(() -> new IllegalStateException("Cart does not hold item " + item.getItemId()));
+    }
+
+    /**
+     * Update pipeline incrementing the quantity of the line for {@code itemId}, or appending
+     * {@code line} when the cart has no such line yet. The totals are recomputed from the updated
+     * lines in the same write, rounding line prices to cents like {@link Cart#cents(Item)}.
+     * <p>
+     * Client values are wrapped in {@code $literal}: an item id starting with {@code $} would
+     * otherwise be read as a field path or an operator.
+     */
+    static List<Bson> addOrIncrement(String itemId, Document line) {
+        Document literalItemId = new Document("$literal", itemId);
+        Document currentLines = new Document("$ifNull", List.of("$" + ITEMS, List.of()));
+        Document increment = new Document("$map", new Document("input", currentLines)
+                .append("in", new Document("$cond", List.of(
+                        new Document("$eq", List.of("$$this." + ITEM_ID, literalItemId)),
+                        new Document("$mergeObjects", List.of("$$this",
+                                new Document(QUANTITY, new Document("$add", List.of("$$this." + QUANTITY, 1))))),
+                        "$$this"))));
+        Document append = new Document("$concatArrays", List.of(currentLines, new Document("$literal", List.of(line))));
+        Document hasLine = new Document("$in", List.of(literalItemId, new Document("$ifNull", List.of("$" + ITEMS + "." + ITEM_ID, List.of()))));
+
+        Document nextVersion = new Document("$add", List.of(new Document("$ifNull", List.of("$" + VERSION, 0L)), 1L));
+
+        Document unitCents = new Document("$toLong", new Document("$floor", new Document("$add", List.of(
+                new Document("$multiply", List.of("$$this." + UNIT_PRICE, 100)), 0.5))));
+        Document totals = new Document(ITEM_COUNT, new Document("$sum", "$" + ITEMS + "." + QUANTITY))
+                .append(LINE_COUNT, new Document("$size", "$" + ITEMS))
+                .append(SUBTOTAL_CENTS, new Document("$sum", new Document("$map", new Document("input", "$" + ITEMS)
+                        .append("in", new Document("$multiply", List.of("$$this." + QUANTITY, unitCents))))));
+
+        return List.of(new Document("$set", new Document(ITEMS, new Document("$cond", List.of(hasLine, increment, append)))
+                        .append(VERSION, nextVersion)),
+                new Document("$set", totals));
+    }
+
+    /**
+     * Converts {@code cart} to the document to store, with the next version. Assigns an id to new carts.
+     */
+    private Document document(Cart cart) {
+        Document document = document(mongoTemplate.getConverter(), cart);
+        if (storageMode == CartStorageMode.DBREF) {
+            // Every referenced item must exist, whether the line is new or its item was lost
+            itemDAO.insertIfAbsent(cart.getItems());
+            document.put(ITEMS, cart.getItems().stream().map(this::reference).toList());
+        }
+        return document;
+    }
+
+    /**
+     * Converts {@code cart} to an embedded cart document with the next version.
+     */
+    static Document document(MongoConverter converter, Cart cart) {
+        if (cart.getId() == null) {
+            cart.setId(new ObjectId().toHexString());
+        }
+        Document document = new Document();
+        converter.write(cart, document);
+        document.put(VERSION, cart.getVersion() == null ? 1L : cart.getVersion() + 1);
+        return document;
+    }
+
+    /**
+     * Matches the stored cart only if it still has the version that was read. Carts written before
+     * versioning have no version field, which {@code eq(version, null)} also matches.
+     */
+    private Bson versioned(Cart cart) {
+        return versioned(mongoTemplate.getConverter(), cart);
+    }
+
+    static Bson versioned(MongoConverter converter, Cart cart) {
+        return Filters.and(
+                Filters.eq(ID, converter.convertId(cart.getId(), ObjectId.class)),
+                Filters.eq(VERSION, cart.getVersion()));
+    }
+
+    static OptimisticLockingFailureException conflict(Cart cart) {
+        return conflict(cart.getCustomerId());
+    }
+
+    static OptimisticLockingFailureException conflict(String customerId) {
+        return new OptimisticLockingFailureException("Cart of customer " + customerId + " was modified concurrently");
+    }
+
+    private DBRef reference(Item item) {
+        return new DBRef(mongoTemplate.getCollectionName(Item.class),
+                mongoTemplate.getConverter().convertId(item.getId(), ObjectId.class));
+    }
+
+    /**
+     * Replaces every DBRef in {@code lines} by the referenced document, keeping the line order.
+     * References are fetched with one query per referenced collection; dangling ones are dropped.
+     */
+    private List<Object> resolve(List<Object> lines) {
+        Map<String, List<Object>> idsByCollection = new HashMap<>();
+        for (Object line : lines) {
+            if (line instanceof DBRef ref) {
+                idsByCollection.computeIfAbsent(ref.getCollectionName(), c -> new ArrayList<>()).add(ref.getId());
+            }
+        }
+
+        Map<String, Map<Object, Document>> found = new HashMap<>();
+        idsByCollection.forEach((collection, ids) -> {
+            Map<Object, Document> byId = new HashMap<>();
+            for (Document item : database().getCollection(collection).find(Filters.in(ID, ids))) {
+                byId.put(item.get(ID), item);
+            }
+            found.put(collection, byId);
+        });
+
+        List<Object> resolved = new ArrayList<>(lines.size());
+        for (Object line : lines) {
+            if (line instanceof DBRef ref) {
+                Document item = found.get(ref.getCollectionName()).get(ref.getId());
+                if (item != null) {
+                    resolved.add(item);
+                }
+            } else {
+                resolved.add(line);
+            }
+        }
+        return resolved;
+    }
+
+    static List<Object> lines(Document document) {
+        return document.getList(ITEMS, Object.class, List.of());
+    }
+
+    static boolean hasReferences(List<Object> lines) {
+        return lines.stream().filter(Objects::nonNull).anyMatch(DBRef.class::isInstance);
+    }
+}
@@ -0,0 +1,85 @@
+package works.weave.socks.cart.cart;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a cart mutation when its version-checked write loses against a concurrent one.
+ * <p>
+ * Each attempt must re-read what it modifies. Attempts are bounded, and the wait between them is
+ * a random ("full jitter") delay below an exponentially growing cap so that retrying writers
+ * spread out instead of colliding again. Callers serializing mutations with {@link CartLocks}
+ * take the lock inside the mutation, so that it is not held while waiting.
+ * <p>
+ * A mutation still conflicting after the last attempt fails with a {@link CartConflictException}.
+ */
+public class OptimisticRetry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OptimisticRetry.class);
+
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final Counter operations;
+    private final Counter conflicts;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public OptimisticRetry(int maxAttempts, Duration backoff, MeterRegistry meterRegistry) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffNanos = backoff.toNanos();
+        this.operations = Counter.builder("carts.optimistic.operations")
+                .description("Cart mutations run with optimistic concurrency").register(meterRegistry);
+        this.conflicts = Counter.builder("carts.optimistic.conflicts")
+                .description("Version conflicts on cart writes").register(meterRegistry);
+        this.retries = Counter.builder("carts.optimistic.retries")
+                .description("Cart mutations retried after a version conflict").register(meterRegistry);
+        this.exhausted = Counter.builder("carts.optimistic.exhausted")
+                .description("Cart mutations that still conflicted after the last attempt").register(meterRegistry);
+    }
+
+    public void run(Runnable mutation) {
+        run(() -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    public <T> T run(Supplier<T> mutation) {
+        operations.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return mutation.get();
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw new CartConflictException(e);
+                }
+                LOG.debug("Version conflict on attempt {}: {}", attempt, e.getMessage());
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long cap = backoffNanos << Math.min(attempt - 1, 16);
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(cap));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OptimisticLockingFailureException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package works.weave.socks.cart.cart;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.Collection;
+
+/**
+ * Non-blocking counterpart of {@link CartDAO}. Writes are version-checked the same way and fail
+ * with an {@link org.springframework.dao.OptimisticLockingFailureException} on conflict.
+ */
+public interface ReactiveCartDAO {
+    Mono<Void> delete(Cart cart);
+
+    Mono<Cart> save(Cart cart);
+
+    Flux<Cart> findByCustomerId(String customerId);
+
+    /**
+     * @see CartDAO#saveAndDelete(Collection, Collection)
+     */
+    Mono<Void> saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete);
+
+    /**
+     * @see CartDAO#addItem(String, Item)
+     */
+    Mono<Item> addItem(String customerId, Item item);
+
+    /**
+     * @see CartDAO#summary(String)
+     */
+    Mono<CartSummary> summary(String customerId);
+}
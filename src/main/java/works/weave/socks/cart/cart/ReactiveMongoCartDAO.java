@@ -0,0 +1,193 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.repositories.ReactiveCartRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link ReactiveCartDAO} storing the same documents as {@link MongoCartDAO}.
+ * <p>
+ * Reads go through {@link ReactiveCartRepository}; writes use the collection directly so that
+ * they are version-checked exactly like the blocking DAO. Only embedded lines are supported:
+ * legacy DBRef carts have to be migrated before this DAO is used.
+ */
+public class ReactiveMongoCartDAO implements ReactiveCartDAO {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReactiveCartRepository cartRepository;
+    /** Set once the unique customer index cart creations rely on is known to exist. */
+    private final AtomicBoolean customerIndex = new AtomicBoolean();
+
+    public ReactiveMongoCartDAO(ReactiveMongoTemplate mongoTemplate, ReactiveCartRepository cartRepository) {
+        this.mongoTemplate = mongoTemplate;
+        this.cartRepository = cartRepository;
+    }
+
+    @Override
+    public Mono<Void> delete(Cart cart) {
+        return cartCollection()
+                .flatMap(collection -> Mono.from(collection.deleteOne(MongoCartDAO.versioned(converter(), cart))))
+                .flatMap(result -> result.getDeletedCount() == 0
+                        ? Mono.error(MongoCartDAO.conflict(cart))
+                        : Mono.empty());
+    }
+
+    @Override
+    public Mono<Cart> save(Cart cart) {
+        return Mono.defer(() -> {
+            boolean isNew = cart.getId() == null;
+            Document document = MongoCartDAO.document(converter(), cart);
+            return cartCollection()
+                    .flatMap(collection -> (isNew ? ensureCustomerIndex(collection) : Mono.<Void>empty())
+                            .then(Mono.from(collection.replaceOne(MongoCartDAO.versioned(converter(), cart),
+                                    document, new ReplaceOptions().upsert(isNew)))))
+                    .onErrorMap(e -> e instanceof MongoWriteException write
+                                    && write.getError().getCategory() == ErrorCategory.DUPLICATE_KEY,
+                            e -> MongoCartDAO.conflict(cart))
+                    .flatMap(result -> {
+                        if (result.getMatchedCount() == 0 && result.getUpsertedId() == null) {
+                            return Mono.error(MongoCartDAO.conflict(cart));
+                        }
+                        cart.setVersion(document.getLong(MongoCartDAO.VERSION));
+                        return Mono.just(cart);
+                    });
+        });
+    }
+
+    @Override
+    public Flux<Cart> findByCustomerId(String customerId) {
+        return cartRepository.findByCustomerId(customerId).map(MongoCartDAO::counted);
+    }
+
+    /**
+     * @see MongoCartDAO#summary(String)
+     */
+    @Override
+    public Mono<CartSummary> summary(String customerId) {
+        return cartCollection()
+                .flatMap(collection -> Mono.from(collection.find(Filters.eq(MongoCartDAO.CUSTOMER_ID, customerId))
+                        .projection(Projections.include(MongoCartDAO.ITEM_COUNT, MongoCartDAO.LINE_COUNT, MongoCartDAO.SUBTOTAL_CENTS))
+                        .first()))
+                .flatMap(totals -> Mono.justOrEmpty(MongoCartDAO.summary(customerId, totals))
+                        .switchIfEmpty(Mono.defer(() -> findByCustomerId(customerId).next().map(CartSummary::new))))
+                .defaultIfEmpty(new CartSummary(customerId));
+    }
+
+    /**
+     * Saves then deletes like {@link MongoCartDAO#saveAndDelete}: the deletes are only sent once
+     * every save has won, and the two are not atomic.
+     */
+    @Override
+    public Mono<Void> saveAndDelete(Collection<Cart> toSave, Collection<Cart> toDelete) {
+        return Mono.defer(() -> {
+            List<WriteModel<Document>> saves = new ArrayList<>();
+            List<Document> documents = new ArrayList<>();
+            for (Cart cart : toSave) {
+                boolean isNew = cart.getId() == null;
+                Document document = MongoCartDAO.document(converter(), cart);
+                documents.add(document);
+                saves.add(new ReplaceOneModel<>(MongoCartDAO.versioned(converter(), cart), document,
+                        new ReplaceOptions().upsert(isNew)));
+            }
+            List<WriteModel<Document>> deletes = new ArrayList<>();
+            for (Cart cart : toDelete) {
+                deletes.add(new DeleteOneModel<>(MongoCartDAO.versioned(converter(), cart)));
+            }
+
+            Mono<Void> save = saves.isEmpty() ? Mono.empty() : bulkWrite(saves, toSave, toDelete)
+                    .flatMap(result -> {
+                        if (result.getMatchedCount() + result.getUpserts().size() < toSave.size()) {
+                            return Mono.error(MongoCartDAO.concurrentlyModified(toSave, toDelete));
+                        }
+                        Iterator<Document> written = documents.iterator();
+                        toSave.forEach(cart -> cart.setVersion(written.next().getLong(MongoCartDAO.VERSION)));
+                        return Mono.empty();
+                    });
+            Mono<Void> delete = deletes.isEmpty() ? Mono.empty() : bulkWrite(deletes, toSave, toDelete)
+                    .flatMap(result -> result.getDeletedCount() < toDelete.size()
+                            ? Mono.error(MongoCartDAO.concurrentlyModified(toSave, toDelete))
+                            : Mono.empty());
+            return save.then(delete);
+        });
+    }
+
+    private Mono<BulkWriteResult> bulkWrite(List<WriteModel<Document>> writes, Collection<Cart> toSave, Collection<Cart> toDelete) {
+        return cartCollection()
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes)))
+                .onErrorMap(e -> e instanceof MongoBulkWriteException bulk && bulk.getWriteErrors().stream()
+                                .anyMatch(error -> error.getCategory() == ErrorCategory.DUPLICATE_KEY),
+                        e -> new OptimisticLockingFailureException(MongoCartDAO.concurrentlyModified(toSave, toDelete).getMessage(), e));
+    }
+
+    /**
+     * Same single {@code findOneAndUpdate} as {@link MongoCartDAO#addItem(String, Item)}, creating
+     * the cart with an upsert when the customer has none, once the unique customer index exists.
+     */
+    @Override
+    public Mono<Item> addItem(String customerId, Item item) {
+        return Mono.defer(() -> {
+            List<Bson> addOrIncrement = MongoCartDAO.addOrIncrement(item.getItemId(), MongoCartDAO.line(converter(), item));
+            Bson cart = Filters.eq(MongoCartDAO.CUSTOMER_ID, customerId);
+            return cartCollection()
+                    .flatMap(collection -> ensureCustomerIndex(collection).then(Mono.from(collection.findOneAndUpdate(cart, addOrIncrement,
+                                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER))))
+                            // Another request created the cart first
+                            .onErrorResume(e -> e instanceof MongoCommandException command
+                                            && ErrorCategory.fromErrorCode(command.getErrorCode()) == ErrorCategory.DUPLICATE_KEY,
+                                    e -> Mono.from(collection.findOneAndUpdate(cart, addOrIncrement,
+                                            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)))))
+                    // Deleted again before the update could follow it
+                    .switchIfEmpty(Mono.error(() -> MongoCartDAO.conflict(customerId)))
+                    .map(document -> MongoCartDAO.line(converter(), document, item));
+        });
+    }
+
+    /**
+     * @see MongoCartDAO
+     */
+    private Mono<Void> ensureCustomerIndex(MongoCollection<Document> collection) {
+        if (customerIndex.get()) {
+            return Mono.empty();
+        }
+        return Mono.from(collection.createIndex(Indexes.ascending(MongoCartDAO.CUSTOMER_ID), MongoCartDAO.customerIndexOptions()))
+                .doOnSuccess(name -> customerIndex.set(true))
+                .then();
+    }
+
+    private Mono<MongoCollection<Document>> cartCollection() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Cart.class));
+    }
+
+    private MongoConverter converter() {
+        return mongoTemplate.getConverter();
+    }
+}
@@ -50,7 +50,7 @@ public interface Resource<T> {
                 if (cart == null) {
                     create().get();
                 }
-                toMerge.getItems().forEach(item -> cart.add(item));
+                cart.merge(toMerge);
             };
         }
     }
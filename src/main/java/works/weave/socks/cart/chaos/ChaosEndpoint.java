@@ -0,0 +1,63 @@
+package works.weave.socks.cart.chaos;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+
+/**
+ * {@code /actuator/chaos}: shows the fault injection state, toggles it and sets or removes rules.
+ * <p>
+ * {@code POST {"enabled": true}} toggles injection; a POST with a {@code route} sets the rule of
+ * that route (an omitted rate is 1, other omitted fields are 0). {@code DELETE} removes every rule, or the one of
+ * {@code ?route=}.
+ * <p>
+ * Anyone reaching it can slow down or fail the service, so it is disabled unless
+ * {@code management.endpoint.chaos.enabled=true}.
+ */
+@Endpoint(id = "chaos", enableByDefault = false)
+public class ChaosEndpoint {
+
+    private final ChaosEngine chaosEngine;
+
+    public ChaosEndpoint(ChaosEngine chaosEngine) {
+        this.chaosEngine = chaosEngine;
+    }
+
+    @ReadOperation
+    public State state() {
+        return new State(chaosEngine.isEnabled(), chaosEngine.rules(), chaosEngine.retainedBytes());
+    }
+
+    @WriteOperation
+    public State update(@Nullable Boolean enabled, @Nullable String route, @Nullable Double rate,
+                        @Nullable Long latencyMinMs, @Nullable Long latencyMaxMs, @Nullable Double errorRate,
+                        @Nullable Long cpuBurnMs, @Nullable Integer allocationKb, @Nullable Integer retainKb) {
+        if (route != null) {
+            chaosEngine.put(new FaultRule(route,
+                    rate == null ? 1 : rate,
+                    latencyMinMs == null ? 0 : latencyMinMs,
+                    latencyMaxMs == null ? 0 : latencyMaxMs,
+                    errorRate == null ? 0 : errorRate,
+                    cpuBurnMs == null ? 0 : cpuBurnMs,
+                    allocationKb == null ? 0 : allocationKb,
+                    retainKb == null ? 0 : retainKb));
+        }
+        if (enabled != null) {
+            chaosEngine.setEnabled(enabled);
+        }
+        return state();
+    }
+
+    @DeleteOperation
+    public State remove(@Nullable String route) {
+        chaosEngine.remove(route);
+        return state();
+    }
+
+    public record State(boolean enabled, Collection<FaultRule> rules, long retainedBytes) {
+    }
+}
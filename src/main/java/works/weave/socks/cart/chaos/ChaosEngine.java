@@ -0,0 +1,204 @@
+package works.weave.socks.cart.chaos;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injects faults into requests according to per-route {@link FaultRule}s, for capacity and
+ * resilience testing.
+ * <p>
+ * Every fault is bounded: rules are clamped to the configured caps when they are set, and memory
+ * retained across requests is released oldest first once its cap is reached. When the engine is
+ * disabled, {@link #apply(String)} returns after a single volatile read.
+ */
+public class ChaosEngine {
+
+    public static final String ANY_ROUTE = "*";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChaosEngine.class);
+
+    private final long maxLatencyMs;
+    private final long maxCpuBurnMs;
+    private final int maxAllocationKb;
+    private final long maxRetainedBytes;
+    private final Counter latencies;
+    private final Counter errors;
+    private final Counter cpuBurns;
+    private final Counter allocations;
+
+    private volatile boolean enabled;
+    private volatile Map<String, FaultRule> rules = Map.of();
+
+    private final Deque<byte[]> retained = new ArrayDeque<>();
+    private long retainedBytes;
+
+    public ChaosEngine(Duration maxLatency, Duration maxCpuBurn, int maxAllocationKb, long maxRetainedBytes,
+                       MeterRegistry meterRegistry) {
+        this.maxLatencyMs = maxLatency.toMillis();
+        this.maxCpuBurnMs = maxCpuBurn.toMillis();
+        this.maxAllocationKb = maxAllocationKb;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.latencies = counter("latency", meterRegistry);
+        this.errors = counter("error", meterRegistry);
+        this.cpuBurns = counter("cpu", meterRegistry);
+        this.allocations = counter("allocation", meterRegistry);
+    }
+
+    private static Counter counter(String fault, MeterRegistry meterRegistry) {
+        return Counter.builder("carts.chaos.faults").tag("fault", fault)
+                .description("Faults injected into requests").register(meterRegistry);
+    }
+
+    /**
+     * Applies the rule of {@code route}, or the {@link #ANY_ROUTE} rule, to the current request.
+     *
+     * @throws ChaosException if the request was picked to fail
+     */
+    public void apply(String route) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, FaultRule> current = rules;
+        FaultRule rule = current.get(route);
+        if (rule == null) {
+            rule = current.get(ANY_ROUTE);
+            if (rule == null) {
+                return;
+            }
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < rule.rate()) {
+            sleep(rule, random);
+            burn(rule);
+            allocate(rule);
+        }
+        if (random.nextDouble() < rule.errorRate()) {
+            errors.increment();
+            throw new ChaosException(route);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        LOG.warn("Fault injection {}", enabled ? "enabled" : "disabled");
+    }
+
+    public Collection<FaultRule> rules() {
+        return rules.values();
+    }
+
+    /**
+     * Adds the rule, replacing any rule of the same route, after clamping it to the caps.
+     *
+     * @return the rule as it will be applied
+     */
+    public synchronized FaultRule put(FaultRule rule) {
+        long latencyMaxMs = clamp(rule.latencyMaxMs(), maxLatencyMs);
+        FaultRule clamped = new FaultRule(
+                rule.route() == null ? ANY_ROUTE : rule.route(),
+                clamp(rule.rate()),
+                Math.min(clamp(rule.latencyMinMs(), maxLatencyMs), latencyMaxMs),
+                latencyMaxMs,
+                clamp(rule.errorRate()),
+                clamp(rule.cpuBurnMs(), maxCpuBurnMs),
+                (int) clamp(rule.allocationKb(), maxAllocationKb),
+                (int) clamp(rule.retainKb(), maxAllocationKb));
+        Map<String, FaultRule> updated = new HashMap<>(rules);
+        updated.put(clamped.route(), clamped);
+        rules = Map.copyOf(updated);
+        LOG.warn("Fault rule set: {}", clamped);
+        return clamped;
+    }
+
+    /**
+     * Removes the rule of {@code route}, or every rule and all retained memory if it is null.
+     */
+    public synchronized void remove(String route) {
+        if (route == null) {
+            rules = Map.of();
+            release();
+        } else {
+            Map<String, FaultRule> updated = new HashMap<>(rules);
+            updated.remove(route);
+            rules = Map.copyOf(updated);
+        }
+    }
+
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    private synchronized void release() {
+        retained.clear();
+        retainedBytes = 0;
+    }
+
+    private void sleep(FaultRule rule, ThreadLocalRandom random) {
+        if (rule.latencyMaxMs() <= 0) {
+            return;
+        }
+        latencies.increment();
+        try {
+            TimeUnit.MILLISECONDS.sleep(random.nextLong(rule.latencyMinMs(), rule.latencyMaxMs() + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void burn(FaultRule rule) {
+        if (rule.cpuBurnMs() <= 0) {
+            return;
+        }
+        cpuBurns.increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rule.cpuBurnMs());
+        double sink = 0;
+        while (System.nanoTime() - deadline < 0) {
+            sink += Math.log(Math.sqrt(sink + 1));
+        }
+        if (sink < 0) {
+            LOG.trace("{}", sink);
+        }
+    }
+
+    private void allocate(FaultRule rule) {
+        if (rule.allocationKb() > 0) {
+            allocations.increment();
+            byte[] garbage = new byte[rule.allocationKb() * 1024];
+            garbage[garbage.length - 1] = 1;
+        }
+        if (rule.retainKb() > 0) {
+            byte[] kept = new byte[rule.retainKb() * 1024];
+            synchronized (this) {
+                retained.addLast(kept);
+                retainedBytes += kept.length;
+                while (retainedBytes > maxRetainedBytes && !retained.isEmpty()) {
+                    retainedBytes -= retained.removeFirst().length;
+                }
+            }
+        }
+    }
+
+    private static long clamp(long value, long max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    private static double clamp(double rate) {
+        return Math.max(0, Math.min(rate, 1));
+    }
+}
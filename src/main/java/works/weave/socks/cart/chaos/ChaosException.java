@@ -0,0 +1,12 @@
+package works.weave.socks.cart.chaos;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class ChaosException extends RuntimeException {
+
+    public ChaosException(String route) {
+        super("Fault injected on " + route);
+    }
+}
@@ -0,0 +1,29 @@
+package works.weave.socks.cart.chaos;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Applies the {@link ChaosEngine} rules to requests, keyed by the route template they matched.
+ */
+public class ChaosInterceptor implements HandlerInterceptor {
+
+    private final ChaosEngine chaosEngine;
+
+    public ChaosInterceptor(ChaosEngine chaosEngine) {
+        this.chaosEngine = chaosEngine;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (chaosEngine.isEnabled()
+                && request.getDispatcherType() == DispatcherType.REQUEST
+                && request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) instanceof String route) {
+            chaosEngine.apply(route);
+        }
+        return true;
+    }
+}
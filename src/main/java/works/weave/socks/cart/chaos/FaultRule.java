@@ -0,0 +1,24 @@
+package works.weave.socks.cart.chaos;
+
+/**
+ * Faults injected into the requests of one route.
+ *
+ * @param route        route template as mapped by Spring MVC (e.g. {@code /carts/{customerId}/items}),
+ *                     or {@link ChaosEngine#ANY_ROUTE} for every route without a rule of its own
+ * @param rate         fraction of the requests that get the latency, CPU and allocation faults
+ * @param latencyMinMs lower bound of the added latency, drawn uniformly up to {@code latencyMaxMs}
+ * @param latencyMaxMs upper bound of the added latency
+ * @param errorRate    fraction of the requests that fail with a 500
+ * @param cpuBurnMs    time spent spinning on the request thread
+ * @param allocationKb garbage allocated per request
+ * @param retainKb     memory kept per request, up to the engine's retained cap
+ */
+public record FaultRule(String route,
+                        double rate,
+                        long latencyMinMs,
+                        long latencyMaxMs,
+                        double errorRate,
+                        long cpuBurnMs,
+                        int allocationKb,
+                        int retainKb) {
+}
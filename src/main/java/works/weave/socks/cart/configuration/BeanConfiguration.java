@@ -1,56 +1,134 @@
 package works.weave.socks.cart.configuration;
 
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import works.weave.socks.cart.cart.CachingCartDAO;
 import works.weave.socks.cart.cart.CartDAO;
-import works.weave.socks.cart.entities.Cart;
-import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.cart.CartLocks;
+import works.weave.socks.cart.cart.CartMigrator;
+import works.weave.socks.cart.cart.CartStorageMode;
+import works.weave.socks.cart.cart.CausalCartDAO;
+import works.weave.socks.cart.cart.IndexManager;
+import works.weave.socks.cart.cart.MeteredCartDAO;
+import works.weave.socks.cart.cart.MongoCartDAO;
+import works.weave.socks.cart.cart.OptimisticRetry;
+import works.weave.socks.cart.item.EmbeddedItemDAO;
 import works.weave.socks.cart.item.ItemDAO;
-import works.weave.socks.cart.repositories.CartRepository;
-import works.weave.socks.cart.repositories.ItemRepository;
+import works.weave.socks.cart.item.MeteredItemDAO;
+import works.weave.socks.cart.item.MongoItemDAO;
 
-import java.util.List;
+import java.time.Duration;
 
+/**
+ * Servlet variant, on the blocking Mongo client. The reactive profile replaces it with
+ * {@link ReactiveConfiguration}, and does not start the blocking client at all.
+ */
 @Configuration
+@Profile("!reactive")
 public class BeanConfiguration {
 
+    private static final Logger LOG = LoggerFactory.getLogger(BeanConfiguration.class);
+
     @Bean
-    public CartDAO cartDao(CartRepository cartRepository) {
-        return new CartDAO() {
-            @Override
-            public void delete(Cart cart) {
-                cartRepository.delete(cart);
-            }
-
-            @Override
-            public Cart save(Cart cart) {
-                return cartRepository.save(cart);
-            }
-
-            @Override
-            public List<Cart> findByCustomerId(String customerId) {
-                return cartRepository.findByCustomerId(customerId);
-            }
-        };
+    public MongoCartDAO mongoCartDao(MongoTemplate mongoTemplate,
+                                     @Value("${cart.storage.mode:embedded}") CartStorageMode storageMode,
+                                     @Value("${cart.storage.migrate-on-read:true}") boolean migrateOnRead,
+                                     @Value("${cart.db.read-preference:primary}") String readPreference,
+                                     @Value("${cart.db.write-concern:acknowledged}") String writeConcern) {
+        WriteConcern cartWriteConcern = WriteConcern.valueOf(writeConcern);
+        if (cartWriteConcern == null) {
+            throw new IllegalArgumentException("Unknown cart.db.write-concern: " + writeConcern);
+        }
+        return new MongoCartDAO(mongoTemplate, storageMode, migrateOnRead,
+                ReadPreference.valueOf(readPreference), cartWriteConcern);
+    }
+
+    @Bean
+    @Primary
+    public CartDAO cartDao(MongoCartDAO mongoCartDao,
+                           MongoDatabaseFactory databaseFactory,
+                           MeterRegistry meterRegistry,
+                           @Value("${cart.db.causal-reads.enabled:false}") boolean causalReads,
+                           @Value("${cart.db.causal-reads.max-customers:100000}") int causalMaxCustomers,
+                           @Value("${cart.db.causal-reads.token-ttl:60s}") Duration causalTokenTtl,
+                           @Value("${cart.db.write-concern:acknowledged}") String writeConcern,
+                           @Value("${cart.cache.enabled:false}") boolean cacheEnabled,
+                           @Value("${cart.cache.max-size:10000}") int cacheMaxSize,
+                           @Value("${cart.cache.ttl:30s}") Duration cacheTtl,
+                           @Value("${cart.cache.negative-ttl:5s}") Duration cacheNegativeTtl) {
+        if (causalReads && !WriteConcern.MAJORITY.equals(WriteConcern.valueOf(writeConcern))) {
+            LOG.warn("cart.db.causal-reads.enabled without cart.db.write-concern=majority: a failover can roll "
+                    + "back a write acknowledged by the primary alone, and the reads waiting for it then miss it");
+        }
+        CartDAO persistentCartDao = causalReads
+                ? new CausalCartDAO(mongoCartDao, databaseFactory, causalMaxCustomers, causalTokenTtl, meterRegistry)
+                : mongoCartDao;
+        CartDAO meteredCartDao = new MeteredCartDAO(persistentCartDao, meterRegistry);
+        if (!cacheEnabled) {
+            return meteredCartDao;
+        }
+        return new CachingCartDAO(meteredCartDao, cacheMaxSize, cacheTtl, cacheNegativeTtl, meterRegistry);
     }
 
     @Bean
-    public ItemDAO itemDao(ItemRepository itemRepository) {
-        return new ItemDAO() {
-            @Override
-            public Item save(Item item) {
-                return itemRepository.save(item);
-            }
-
-            @Override
-            public void destroy(Item item) {
-                itemRepository.delete(item);
-            }
-
-            @Override
-            public Item findOne(String id) {
-                return itemRepository.findById(id).orElse(null);
-            }
+    public CartLocks cartLocks(MeterRegistry meterRegistry,
+                               @Value("${cart.lock.enabled:true}") boolean enabled,
+                               @Value("${cart.lock.stripes:256}") int stripes,
+                               @Value("${cart.lock.timeout:2s}") Duration timeout) {
+        return enabled ? new CartLocks(stripes, timeout, meterRegistry) : CartLocks.disabled();
+    }
+
+    @Bean
+    public OptimisticRetry optimisticRetry(MeterRegistry meterRegistry,
+                                           @Value("${cart.retry.max-attempts:5}") int maxAttempts,
+                                           @Value("${cart.retry.backoff:10ms}") Duration backoff) {
+        return new OptimisticRetry(maxAttempts, backoff, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cart.storage.migration.enabled", havingValue = "true")
+    public ApplicationRunner cartMigrationRunner(MongoCartDAO cartDao,
+                                                 @Value("${cart.storage.migration.batch-size:100}") int batchSize) {
+        return args -> {
+            Thread migration = new Thread(new CartMigrator(cartDao, batchSize), "cart-migration");
+            migration.setDaemon(true);
+            migration.start();
         };
     }
+
+    /**
+     * Runs before the application reports itself ready, so that no traffic is served without the
+     * indexes.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "cart.db.indexes.enabled", havingValue = "true", matchIfMissing = true)
+    public ApplicationRunner indexManagerRunner(MongoTemplate mongoTemplate,
+                                                @Value("${cart.db.indexes.on-failure:fail}") IndexManager.Mode mode) {
+        return args -> new IndexManager(mongoTemplate, mode).run();
+    }
+
+    /**
+     * Items are only mirrored in the item collection for {@link CartStorageMode#DBREF} carts, whose
+     * references point there; embedded carts write none on any endpoint.
+     */
+    @Bean
+    public ItemDAO itemDao(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                           @Value("${cart.storage.mode:embedded}") CartStorageMode storageMode) {
+        if (storageMode == CartStorageMode.EMBEDDED) {
+            return new EmbeddedItemDAO();
+        }
+        return new MeteredItemDAO(new MongoItemDAO(mongoTemplate), meterRegistry);
+    }
 }
@@ -0,0 +1,35 @@
+package works.weave.socks.cart.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import works.weave.socks.cart.chaos.ChaosEndpoint;
+import works.weave.socks.cart.chaos.ChaosEngine;
+
+import java.time.Duration;
+
+@Configuration
+public class ChaosConfiguration {
+
+    @Bean
+    public ChaosEngine chaosEngine(MeterRegistry meterRegistry,
+                                   @Value("${chaos.enabled:false}") boolean enabled,
+                                   @Value("${chaos.max-latency:10s}") Duration maxLatency,
+                                   @Value("${chaos.max-cpu-burn:1s}") Duration maxCpuBurn,
+                                   @Value("${chaos.max-allocation:64MB}") DataSize maxAllocation,
+                                   @Value("${chaos.max-retained:256MB}") DataSize maxRetained) {
+        ChaosEngine chaosEngine = new ChaosEngine(maxLatency, maxCpuBurn, (int) maxAllocation.toKilobytes(),
+                maxRetained.toBytes(), meterRegistry);
+        chaosEngine.setEnabled(enabled);
+        return chaosEngine;
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint
+    public ChaosEndpoint chaosEndpoint(ChaosEngine chaosEngine) {
+        return new ChaosEndpoint(chaosEngine);
+    }
+}
@@ -0,0 +1,18 @@
+package works.weave.socks.cart.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import works.weave.socks.cart.middleware.OperationCounters;
+
+/**
+ * Metrics shared by the servlet and the reactive variants.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public OperationCounters operationCounters(MeterRegistry meterRegistry) {
+        return new OperationCounters(meterRegistry);
+    }
+}
@@ -0,0 +1,82 @@
+package works.weave.socks.cart.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import works.weave.socks.cart.middleware.DatabaseHealthProber;
+import works.weave.socks.cart.middleware.MongoCommandMetrics;
+import works.weave.socks.cart.middleware.MongoPoolMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoConfiguration {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandMetricsCustomizer(
+            MeterRegistry meterRegistry,
+            @Value("${cart.db.metrics.written-size.enabled:false}") boolean measureWrittenSize) {
+        MongoCommandMetrics metrics = new MongoCommandMetrics(meterRegistry, measureWrittenSize);
+        return settings -> settings.addCommandListener(metrics);
+    }
+
+    /**
+     * Each {@code cart.db.pool.*} and timeout property overrides the same option of
+     * {@code spring.data.mongodb.uri}, but only when it is set: this customizer runs after the
+     * connection string has been applied. Left unset, the URI option applies, or the driver
+     * default if the URI has none. Applies to both the blocking and the reactive clients.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer(
+            MeterRegistry meterRegistry,
+            @Value("${cart.db.pool.max-size:#{null}}") Integer maxSize,
+            @Value("${cart.db.pool.min-size:#{null}}") Integer minSize,
+            @Value("${cart.db.pool.max-wait:#{null}}") Duration maxWait,
+            @Value("${cart.db.pool.max-idle:#{null}}") Duration maxIdle,
+            @Value("${cart.db.connect-timeout:#{null}}") Duration connectTimeout,
+            @Value("${cart.db.socket-timeout:#{null}}") Duration socketTimeout) {
+        MongoPoolMetrics metrics = new MongoPoolMetrics(meterRegistry);
+        return settings -> settings
+                .applyToConnectionPoolSettings(pool -> {
+                    if (maxSize != null) {
+                        pool.maxSize(maxSize);
+                    }
+                    if (minSize != null) {
+                        pool.minSize(minSize);
+                    }
+                    if (maxWait != null) {
+                        pool.maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    if (maxIdle != null) {
+                        pool.maxConnectionIdleTime(maxIdle.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    pool.addConnectionPoolListener(metrics);
+                })
+                .applyToSocketSettings(socket -> {
+                    if (connectTimeout != null) {
+                        socket.connectTimeout(Math.toIntExact(connectTimeout.toMillis()), TimeUnit.MILLISECONDS);
+                    }
+                    if (socketTimeout != null) {
+                        socket.readTimeout(Math.toIntExact(socketTimeout.toMillis()), TimeUnit.MILLISECONDS);
+                    }
+                });
+    }
+
+    /**
+     * Named so that it is reported as the {@code database} health component. The reactive variant
+     * probes with the reactive client instead, see {@link ReactiveConfiguration}.
+     */
+    @Bean
+    @Profile("!reactive")
+    public DatabaseHealthProber databaseHealthIndicator(MongoTemplate mongoTemplate,
+                                                        @Value("${health.db.interval:5s}") Duration interval,
+                                                        @Value("${health.db.timeout:2s}") Duration timeout) {
+        return new DatabaseHealthProber(() -> mongoTemplate.executeCommand(DatabaseHealthProber.CHECK_COMMAND),
+                interval, timeout);
+    }
+}
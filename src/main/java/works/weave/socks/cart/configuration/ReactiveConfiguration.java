@@ -0,0 +1,90 @@
+package works.weave.socks.cart.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.util.retry.Retry;
+import works.weave.socks.cart.cart.CartConflictException;
+import works.weave.socks.cart.cart.CartStorageMode;
+import works.weave.socks.cart.cart.ReactiveCartDAO;
+import works.weave.socks.cart.cart.ReactiveMongoCartDAO;
+import works.weave.socks.cart.item.EmbeddedReactiveItemDAO;
+import works.weave.socks.cart.item.ReactiveItemDAO;
+import works.weave.socks.cart.item.ReactiveMongoItemDAO;
+import works.weave.socks.cart.middleware.DatabaseHealthProber;
+import works.weave.socks.cart.repositories.ReactiveCartRepository;
+import works.weave.socks.cart.repositories.ReactiveItemRepository;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking variant of the API (WebFlux on Netty with the reactive Mongo driver), enabled by
+ * the {@code reactive} profile.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+    /**
+     * Tomcat is on the classpath for the servlet variant and would otherwise be picked first.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ReactiveCartDAO reactiveCartDao(ReactiveMongoTemplate mongoTemplate,
+                                           ReactiveCartRepository cartRepository,
+                                           @Value("${cart.storage.mode:embedded}") CartStorageMode storageMode) {
+        if (storageMode != CartStorageMode.EMBEDDED) {
+            throw new IllegalStateException("The reactive profile requires cart.storage.mode=embedded");
+        }
+        return new ReactiveMongoCartDAO(mongoTemplate, cartRepository);
+    }
+
+    /**
+     * Like {@link BeanConfiguration#itemDao}: embedded carts, the only ones this variant serves,
+     * write no items.
+     */
+    @Bean
+    public ReactiveItemDAO reactiveItemDao(ReactiveMongoTemplate mongoTemplate, ReactiveItemRepository itemRepository,
+                                           @Value("${cart.storage.mode:embedded}") CartStorageMode storageMode) {
+        if (storageMode == CartStorageMode.EMBEDDED) {
+            return new EmbeddedReactiveItemDAO();
+        }
+        return new ReactiveMongoItemDAO(mongoTemplate, itemRepository);
+    }
+
+    /**
+     * Same prober and bean name as in {@link MongoConfiguration}, checking through the reactive
+     * client so that this variant does not need the blocking one. The check blocks the prober's
+     * own thread, never an event loop.
+     */
+    @Bean
+    public DatabaseHealthProber databaseHealthIndicator(ReactiveMongoTemplate mongoTemplate,
+                                                        @Value("${health.db.interval:5s}") Duration interval,
+                                                        @Value("${health.db.timeout:2s}") Duration timeout) {
+        return new DatabaseHealthProber(() -> mongoTemplate.executeCommand(DatabaseHealthProber.CHECK_COMMAND).block(),
+                interval, timeout);
+    }
+
+    /**
+     * Reactive counterpart of {@link works.weave.socks.cart.cart.OptimisticRetry}: re-subscribes a
+     * cart mutation after a version conflict, with a jittered exponential backoff, and likewise
+     * fails with a {@link CartConflictException} once attempts are exhausted.
+     */
+    @Bean
+    public Retry cartRetry(@Value("${cart.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${cart.retry.backoff:10ms}") Duration backoff) {
+        return Retry.backoff(Math.max(0, maxAttempts - 1), backoff)
+                .jitter(1.0)
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) ->
+                        new CartConflictException((OptimisticLockingFailureException) signal.failure()));
+    }
+}
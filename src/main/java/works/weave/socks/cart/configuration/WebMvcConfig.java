@@ -1,20 +1,63 @@
 package works.weave.socks.cart.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.handler.MappedInterceptor;
+import works.weave.socks.cart.chaos.ChaosEngine;
+import works.weave.socks.cart.chaos.ChaosInterceptor;
 import works.weave.socks.cart.middleware.HTTPMonitoringInterceptor;
 
+import java.util.List;
+
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class WebMvcConfig {
 
     @Bean
-    public HTTPMonitoringInterceptor httpMonitoringInterceptor() {
-        return new HTTPMonitoringInterceptor();
+    public HTTPMonitoringInterceptor httpMonitoringInterceptor(@Value("${spring.application.name:carts}") String serviceName,
+                                                               MeterRegistry meterRegistry) {
+        return new HTTPMonitoringInterceptor(serviceName, meterRegistry);
     }
 
     @Bean
     public MappedInterceptor mappedInterceptor(HTTPMonitoringInterceptor interceptor) {
         return new MappedInterceptor(new String[]{"/**"}, interceptor);
     }
+
+    @Bean
+    public MappedInterceptor chaosInterceptor(ChaosEngine chaosEngine) {
+        return new MappedInterceptor(new String[]{"/**"}, new ChaosInterceptor(chaosEngine));
+    }
+
+    /**
+     * Spring MVC registers CBOR and Smile converters with default mappers when their Jackson
+     * modules are present; they are replaced with mappers built like the JSON one, so that every
+     * representation of a payload carries the same fields. Appended after the other converters, so
+     * that JSON stays the answer to clients accepting any type (a converter bean would be put first).
+     */
+    @Bean
+    public WebMvcConfigurer binaryMessageConverters(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        ObjectMapper cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+        ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                        || converter instanceof MappingJackson2SmileHttpMessageConverter);
+                converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper));
+                converters.add(new MappingJackson2SmileHttpMessageConverter(smileMapper));
+            }
+        };
+    }
 }
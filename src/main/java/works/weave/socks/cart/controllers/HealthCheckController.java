@@ -2,18 +2,23 @@ package works.weave.socks.cart.controllers;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.data.mongodb.core.MongoTemplate;
 import works.weave.socks.cart.entities.HealthCheck;
+import works.weave.socks.cart.middleware.DatabaseHealthProber;
 
 import java.util.*;
 
+/**
+ * Serves the last result of {@link DatabaseHealthProber} without querying the database, so it
+ * answers immediately in both the servlet and the reactive variants. The date of the database
+ * check is the time it was last probed.
+ */
 @RestController
 public class HealthCheckController {
 
-    private final MongoTemplate mongoTemplate;
+    private final DatabaseHealthProber databaseHealthProber;
 
-    public HealthCheckController(MongoTemplate mongoTemplate) {
-        this.mongoTemplate = mongoTemplate;
+    public HealthCheckController(DatabaseHealthProber databaseHealthProber) {
+        this.databaseHealthProber = databaseHealthProber;
     }
 
     @ResponseStatus(HttpStatus.OK)
@@ -23,14 +28,10 @@ public class HealthCheckController {
         List<HealthCheck> healthChecks = new ArrayList<>();
         Date dateNow = Calendar.getInstance().getTime();
 
+        DatabaseHealthProber.Status status = databaseHealthProber.status();
         HealthCheck app = new HealthCheck("carts", "OK", dateNow);
-        HealthCheck database = new HealthCheck("carts-db", "OK", dateNow);
-
-        try {
-            mongoTemplate.executeCommand("{ buildInfo: 1 }");
-        } catch (Exception e) {
-            database.setStatus("err");
-        }
+        HealthCheck database = new HealthCheck("carts-db", status.up() ? "OK" : "err",
+                status.checkedAt() == null ? dateNow : Date.from(status.checkedAt()));
 
         healthChecks.add(app);
         healthChecks.add(database);
@@ -1,24 +1,43 @@
 package works.weave.socks.cart.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import works.weave.socks.cart.cart.CartDAO;
+import works.weave.socks.cart.cart.CartItems;
+import works.weave.socks.cart.cart.CartLocks;
 import works.weave.socks.cart.cart.CartResource;
+import works.weave.socks.cart.cart.CartUnitOfWork;
+import works.weave.socks.cart.cart.OptimisticRetry;
+import works.weave.socks.cart.entities.Cart;
 import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.entities.ItemOperation;
+import works.weave.socks.cart.entities.ItemOperationResult;
 import works.weave.socks.cart.item.FoundItem;
+import works.weave.socks.cart.item.ItemBatch;
+import works.weave.socks.cart.item.ItemBatchTooLargeException;
 import works.weave.socks.cart.item.ItemDAO;
 import works.weave.socks.cart.item.ItemResource;
+import works.weave.socks.cart.middleware.OperationCounters;
+import works.weave.socks.cart.middleware.OperationCounters.Operation;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.function.Supplier;
+import java.util.Map;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/carts/{customerId}/items")
 public class ItemsController {
 
@@ -27,306 +46,157 @@ public class ItemsController {
     private final ItemDAO itemDAO;
     private final CartsController cartsController;
     private final CartDAO cartDAO;
-
-    // Configuration des simulations
-    @Value("${http.timeout:5000}")
-    private long timeout;
-
-    @Value("${simulate.latency:false}")
-    private boolean simulateLatency;
-
-    @Value("${simulate.cpu:false}")
-    private boolean simulateCpu;
-
-    @Value("${simulate.leak:false}")
-    private boolean simulateLeak;
-
-    @Value("${simulate.thread:false}")
-    private boolean simulateThread;
-
-    @Value("${simulate.deadlock:false}")
-    private boolean simulateDeadlock;
-
-    @Value("${simulate.error:false}")
-    private boolean simulateError;
-
-    @Value("${simulate.gc:false}")
-    private boolean simulateGc;
-
-    @Value("${simulate.buffer:false}")
-    private boolean simulateBuffer;
-
-    @Value("${simulate.leak.size:10240}") // en KB (10MB par défaut)
-    private int leakSize;
-
-    @Value("${simulate.leak.interval:1000}") // en ms
-    private int leakInterval;
-
-    @Value("${simulate.gc.interval:30000}") // en ms
-    private int gcInterval;
-
-    @Value("${simulate.thread.count:50}")
-    private int threadCount;
-
-    @Value("${simulate.buffer.size:1048576}") // 1MB
-    private int bufferSize;
-
-    private static int successfulOrderCount = 0;
-    private static final List<byte[]> memoryLeakList = new CopyOnWriteArrayList<>();
-    private static final List<ByteBuffer> directBuffers = new CopyOnWriteArrayList<>();
-
-    public ItemsController(ItemDAO itemDAO, CartsController cartsController, CartDAO cartDAO) {
+    private final CartLocks cartLocks;
+    private final OptimisticRetry optimisticRetry;
+    private final OperationCounters operationCounters;
+    /** Does not flush after every line, which would send each line in its own chunk. */
+    private final ObjectWriter itemWriter;
+
+    public ItemsController(ItemDAO itemDAO, CartsController cartsController, CartDAO cartDAO, CartLocks cartLocks,
+                           OptimisticRetry optimisticRetry, OperationCounters operationCounters,
+                           ObjectMapper objectMapper) {
         this.itemDAO = itemDAO;
         this.cartsController = cartsController;
         this.cartDAO = cartDAO;
-        
-        // Démarrer les simulations au démarrage
-        startMemoryLeak();
-        simulateGcProblems();
-        simulateCpuLoad();
-        simulateThreadProblems();
-        simulateBufferProblems();
+        this.cartLocks = cartLocks;
+        this.optimisticRetry = optimisticRetry;
+        this.operationCounters = operationCounters;
+        this.itemWriter = objectMapper.writerFor(Item.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
-    @GetMapping(value = "/{itemId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(value = "/{itemId}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            Representation.APPLICATION_SMILE_VALUE})
     @ResponseStatus(HttpStatus.OK)
-    public Item get(@PathVariable String customerId, @PathVariable String itemId) throws InterruptedException {
-        simulateProblemsIfEnabled();
-        return new FoundItem(() -> getItems(customerId), () -> new Item(itemId)).get();
+    public Item get(@PathVariable String customerId, @PathVariable String itemId) {
+        return FoundItem.inCart(() -> cartsController.get(customerId), () -> new Item(itemId)).get();
     }
 
-    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.OK)
-    public List<Item> getItems(@PathVariable String customerId) {
-        try {
-            simulateProblemsIfEnabled();
-            return cartsController.get(customerId).contents();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            LOG.error("Thread interrupted while getting items", e);
-            return List.of();
+    /**
+     * Lines are written to the response as they are read from the database, so that a large cart
+     * is never held in memory. Conditional like {@link CartsController#get(String, WebRequest)},
+     * with the same ETag, and like it creates the cart of a customer who has none.
+     * <p>
+     * The response is committed with the first lines: a read failing later truncates it.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            Representation.APPLICATION_SMILE_VALUE})
+    public void getItems(@PathVariable String customerId, WebRequest request, HttpServletResponse response)
+            throws IOException {
+        Representation representation = Representation.of(request);
+        // Also on the 304s: the ETag depends on the representation
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (cartsController.notModified(customerId, representation, request)) {
+            operationCounters.increment(Operation.CART_READ);
+            return;
+        }
+        try (CartItems items = cartDAO.items(customerId)) {
+            if (items == null) {
+                Cart cart = cartsController.get(customerId);
+                if (!request.checkNotModified(representation.etag(cart.revision()))) {
+                    write(cart.contents().iterator(), representation, response);
+                }
+                return;
+            }
+            operationCounters.increment(Operation.CART_READ);
+            if (!request.checkNotModified(representation.etag(items.revision()))) {
+                write(items, representation, response);
+            }
         }
     }
-    private static int postRequestCount = 0;
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
-    public Item addToCart(@PathVariable String customerId, @RequestBody Item item) throws InterruptedException {
-        postRequestCount++;
+    public Item addToCart(@PathVariable String customerId, @RequestBody Item item) {
+        Item line = optimisticRetry.run(() -> cartLocks.withLock(customerId, () -> cartDAO.addItem(customerId, item)));
+        operationCounters.increment(Operation.ITEM_ADD);
+        LOG.debug("Added item to cart for user: {}, {}", customerId, line);
+        return line;
+    }
 
-        if (simulateError && postRequestCount >= 6) {
-            LOG.error("💥 Simulated error on POST request #{}", postRequestCount);
-            throw new RuntimeException("Simulated error: POST #" + postRequestCount + " failed");
+    /**
+     * Applies add, set-quantity and remove operations in order to the cart loaded once, then
+     * writes the cart once and, after it, the items once. Operations that cannot be applied are reported in their
+     * result and do not fail the others.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public List<ItemOperationResult> batch(@PathVariable String customerId, @RequestBody List<ItemOperation> operations) {
+        if (operations.size() > ItemBatch.MAX_OPERATIONS) {
+            throw new ItemBatchTooLargeException(operations.size());
         }
+        List<ItemOperationResult> results = optimisticRetry.run(() -> cartLocks.withLock(customerId, () -> {
+            CartUnitOfWork unitOfWork = new CartUnitOfWork(cartDAO);
+            Cart cart = new CartResource(unitOfWork, customerId).value().get();
+            ItemBatch batch = new ItemBatch(cart);
+            List<ItemOperationResult> applied = batch.apply(operations);
+            if (batch.changed()) {
+                unitOfWork.save(cart);
+            }
+            unitOfWork.flush();
+            if (batch.changed()) {
+                // Only once the cart write has won, like updateItem
+                itemDAO.saveAndDestroy(batch.toSave(), batch.toDestroy());
+            }
+            return applied;
+        }));
+        operationCounters.increment(Operation.ITEM_BATCH);
+        LOG.debug("Applied {} item operations to cart for user: {}", results.size(), customerId);
+        return results;
+    }
 
-        simulateProblemsIfEnabled(); // <--- NE PAS compter ici
-
-        FoundItem foundItem = new FoundItem(() -> getItems(customerId), () -> item);
-
-        if (!foundItem.hasItem()) {
-            Supplier<Item> newItem = new ItemResource(itemDAO, () -> item).create();
-            LOG.debug("Did not find item. Creating item for user: {}, {}", customerId, newItem.get());
-            new CartResource(cartDAO, customerId).contents().get().add(newItem).run();
-            return item;
-        } else {
-            Item existingItem = foundItem.get();
-            Item updatedItem = new Item(existingItem, existingItem.getQuantity() + 1);
-            LOG.debug("Found item in cart. Incrementing for user: {}, {}", customerId, updatedItem);
-            updateItem(customerId, updatedItem);
-            return updatedItem;
+    private void write(Iterator<Item> items, Representation representation, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(representation.mediaType().toString());
+        try (JsonGenerator json = representation.generator(itemWriter, response.getOutputStream())) {
+            json.writeStartArray();
+            while (items.hasNext()) {
+                itemWriter.writeValue(json, items.next());
+            }
+            json.writeEndArray();
         }
     }
 
-
-    @GetMapping("/metrics")
-    public int getSuccessfulOrderCount() {
-        return successfulOrderCount;
+    /**
+     * Completed operations of the whole service (not of {@code customerId}) and their throughput
+     * over the last 1 and 5 minutes.
+     */
+    @GetMapping(value = "/metrics", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, OperationCounters.Rates> getOperationRates() {
+        return operationCounters.rates();
     }
 
     @DeleteMapping("/{itemId}")
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public void removeItem(@PathVariable String customerId, @PathVariable String itemId) throws InterruptedException {
-        FoundItem foundItem = new FoundItem(() -> getItems(customerId), () -> new Item(itemId));
-        Item item = foundItem.get();
-        simulateProblemsIfEnabled();
-        
-        LOG.debug("Removing item from cart: {}", item);
-        new CartResource(cartDAO, customerId).contents().get().delete(() -> item).run();
-
-        LOG.debug("Removing item from repository: {}", item);
-        new ItemResource(itemDAO, () -> item).destroy().run();
+    public void removeItem(@PathVariable String customerId, @PathVariable String itemId) {
+        optimisticRetry.run(() -> cartLocks.withLock(customerId, () -> {
+            CartUnitOfWork unitOfWork = new CartUnitOfWork(cartDAO);
+            CartResource cartResource = new CartResource(unitOfWork, customerId);
+            FoundItem foundItem = FoundItem.inCart(() -> cartResource.value().get(), () -> new Item(itemId));
+            Item item = foundItem.get();
+
+            LOG.debug("Removing item from cart: {}", item);
+            cartResource.contents().get().delete(() -> item).run();
+            unitOfWork.flush();
+
+            LOG.debug("Removing item from repository: {}", item);
+            new ItemResource(itemDAO, () -> item).destroy().run();
+        }));
     }
 
     @PatchMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public void updateItem(@PathVariable String customerId, @RequestBody Item item) throws InterruptedException {
-        simulateProblemsIfEnabled();
-        ItemResource itemResource = new ItemResource(itemDAO, () -> {
-            try {
-                return get(customerId, item.getItemId());
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                LOG.error("Thread interrupted while getting item", e);
-                return item;
-            }
-        });
-        
-        LOG.debug("Merging item in cart for user: {}, {}", customerId, item);
-        itemResource.merge(item).run();
-    }
-
-    @GetMapping("/simulateError")
-    public void simulateHttpError() {
-        if (simulateError) {
-            LOG.error("💥 Simulating HTTP error");
-            throw new RuntimeException("Simulated HTTP error");
-        }
-    }
-
-    private void simulateProblemsIfEnabled() throws InterruptedException {
-       
-        if (simulateLatency) {
-            Thread.sleep(timeout);
-            LOG.warn("🕒 Simulated latency ({}ms)", timeout);
-        }
-
-        if (simulateCpu) {
-            for (int i = 0; i < 5_000_000; i++) {
-                Math.log(Math.sqrt(i + 1));
-            }
-            LOG.warn("🔥 Simulated CPU spike");
-        }
-
-        if (simulateLeak) {
-            byte[] leak = new byte[leakSize * 1024];
-            memoryLeakList.add(leak);
-            LOG.warn("💾 Simulated memory leak ({} blocks, total: {}MB)", 
-                memoryLeakList.size(), memoryLeakList.size() * leakSize / 1024);
-        }
-
-    }
-
-    private void startMemoryLeak() {
-        if (simulateLeak) {
-            new Thread(() -> {
-                while (true) {
-                    byte[] leak = new byte[leakSize * 1024];
-                    memoryLeakList.add(leak);
-                    LOG.warn("💾 Added {}KB to memory leak (total: {}MB)", 
-                        leakSize, memoryLeakList.size() * leakSize / 1024);
-                    try {
-                        Thread.sleep(leakInterval);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }).start();
-        }
-    }
-
-    private void simulateGcProblems() {
-        if (simulateGc) {
-            new Thread(() -> {
-                while (true) {
-                    System.gc();
-                    LOG.warn("🗑️ Forced garbage collection");
-                    try {
-                        Thread.sleep(gcInterval);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }).start();
-        }
-    }
-
-    private void simulateCpuLoad() {
-        if (simulateCpu) {
-            int threads = Runtime.getRuntime().availableProcessors();
-            for (int i = 0; i < threads; i++) {
-                new Thread(() -> {
-                    while (true) {
-                        long start = System.currentTimeMillis();
-                        while (System.currentTimeMillis() - start < 1000) {
-                            Math.pow(Math.PI, Math.PI);
-                        }
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                }).start();
-            }
-            LOG.warn("🔥 Started CPU load on {} threads", threads);
-        }
-    }
-
-    private void simulateThreadProblems() {
-        if (simulateThread) {
-            for (int i = 0; i < threadCount; i++) {
-                new Thread(() -> {
-                    synchronized (this) {
-                        try {
-                            wait(); // Threads bloqués indéfiniment
-                        } catch (InterruptedException ignored) {
-                        }
-                    }
-                }).start();
-            }
-            LOG.warn("🧵 Created {} blocked threads", threadCount);
-        }
-        
-        if (simulateDeadlock) {
-            final Object lock1 = new Object();
-            final Object lock2 = new Object();
-
-            Thread t1 = new Thread(() -> {
-                synchronized (lock1) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException ignored) {
-                    }
-                    synchronized (lock2) {
-                        LOG.warn("🔒 Thread 1 acquired both locks");
-                    }
-                }
-            });
-
-            Thread t2 = new Thread(() -> {
-                synchronized (lock2) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException ignored) {
-                    }
-                    synchronized (lock1) {
-                        LOG.warn("🔒 Thread 2 acquired both locks");
-                    }
-                }
-            });
-
-            t1.start();
-            t2.start();
-
-            LOG.warn("🔒 Simulated deadlock launched with 2 threads");
-        }
-    }
-
-    private void simulateBufferProblems() {
-        if (simulateBuffer) {
-            new Thread(() -> {
-                while (true) {
-                    ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
-                    directBuffers.add(buffer);
-                    LOG.warn("📦 Allocated direct buffer (total: {}MB)", 
-                        directBuffers.size() * bufferSize / 1024 / 1024);
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }).start();
-        }
+    public void updateItem(@PathVariable String customerId, @RequestBody Item item) {
+        optimisticRetry.run(() -> cartLocks.withLock(customerId, () -> {
+            CartUnitOfWork unitOfWork = new CartUnitOfWork(cartDAO);
+            CartResource cartResource = new CartResource(unitOfWork, customerId);
+            Item found = FoundItem.inCart(() -> cartResource.value().get(), () -> item).get();
+            Item merged = new Item(found, item.getQuantity()).nextVersion();
+
+            LOG.debug("Merging item in cart for user: {}, {}", customerId, merged);
+            cartResource.contents().get().update(() -> merged).run();
+            unitOfWork.flush();
+            // Only once the cart write has won: a conflict must leave the item as its line still has it
+            new ItemResource(itemDAO, () -> merged).create().get();
+        }));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package works.weave.socks.cart.controllers;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import works.weave.socks.cart.cart.ReactiveCartDAO;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.CartSummary;
+import works.weave.socks.cart.middleware.OperationCounters;
+import works.weave.socks.cart.middleware.OperationCounters.Operation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Same contract as {@link CartsController}, served without blocking a thread per request.
+ * Mutations are not serialized per customer: they rely on the version-checked writes and are
+ * retried on conflict.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/carts")
+public class ReactiveCartsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCartsController.class);
+
+    private final ReactiveCartDAO cartDAO;
+    private final Retry cartRetry;
+    private final Timer mergeTimer;
+    private final OperationCounters operationCounters;
+
+    public ReactiveCartsController(ReactiveCartDAO cartDAO, Retry cartRetry, MeterRegistry meterRegistry,
+                                   OperationCounters operationCounters) {
+        this.cartDAO = cartDAO;
+        this.cartRetry = cartRetry;
+        this.operationCounters = operationCounters;
+        this.mergeTimer = Timer.builder("carts.merge")
+                .description("Time taken to merge a session cart into a customer cart")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @see CartsController#get(String, org.springframework.web.context.request.WebRequest)
+     */
+    @GetMapping(value = "/{customerId:^(?!metrics$).+}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Cart> get(@PathVariable String customerId, ServerWebExchange exchange) {
+        return get(customerId).filter(cart -> !exchange.checkNotModified(cart.revision()));
+    }
+
+    public Mono<Cart> get(String customerId) {
+        return cart(customerId).doOnSuccess(cart -> operationCounters.increment(Operation.CART_READ));
+    }
+
+    @GetMapping(value = "/{customerId}/summary", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<CartSummary> summary(@PathVariable String customerId) {
+        return cartDAO.summary(customerId).doOnSuccess(summary -> operationCounters.increment(Operation.CART_SUMMARY));
+    }
+
+    @DeleteMapping("/{customerId}")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> delete(@PathVariable String customerId) {
+        return cartDAO.findByCustomerId(customerId).next()
+                .flatMap(cartDAO::delete)
+                .retryWhen(cartRetry)
+                .doOnSuccess(done -> operationCounters.increment(Operation.CART_DELETE));
+    }
+
+    @GetMapping("/{customerId}/merge")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> mergeCarts(@PathVariable String customerId, @RequestParam("sessionId") String sessionId) {
+        logger.debug("Merge carts request received for ids: {} and {}", customerId, sessionId);
+        if (customerId.equals(sessionId)) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return cartDAO.findByCustomerId(sessionId).next()
+                            .flatMap(sessionCart -> cart(customerId).flatMap(cart ->
+                                    cartDAO.saveAndDelete(List.of(cart.merge(sessionCart)), List.of(sessionCart))))
+                            .retryWhen(cartRetry)
+                            .doOnSuccess(done -> operationCounters.increment(Operation.CART_MERGE))
+                            .doFinally(signal -> mergeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+                });
+    }
+
+    /**
+     * The customer's cart, created if it does not exist yet.
+     */
+    Mono<Cart> cart(String customerId) {
+        return cartDAO.findByCustomerId(customerId).next()
+                .switchIfEmpty(Mono.defer(() -> cartDAO.save(new Cart(customerId))));
+    }
+}
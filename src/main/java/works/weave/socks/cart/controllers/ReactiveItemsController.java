@@ -0,0 +1,134 @@
+package works.weave.socks.cart.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import works.weave.socks.cart.cart.ReactiveCartDAO;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.entities.ItemOperation;
+import works.weave.socks.cart.entities.ItemOperationResult;
+import works.weave.socks.cart.item.FoundItem;
+import works.weave.socks.cart.item.ItemBatch;
+import works.weave.socks.cart.item.ItemBatchTooLargeException;
+import works.weave.socks.cart.item.ReactiveItemDAO;
+import works.weave.socks.cart.middleware.OperationCounters;
+import works.weave.socks.cart.middleware.OperationCounters.Operation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Same contract as {@link ItemsController}, served without blocking a thread per request.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/carts/{customerId}/items")
+public class ReactiveItemsController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveItemsController.class);
+
+    private final ReactiveItemDAO itemDAO;
+    private final ReactiveCartsController cartsController;
+    private final ReactiveCartDAO cartDAO;
+    private final Retry cartRetry;
+    private final OperationCounters operationCounters;
+
+    public ReactiveItemsController(ReactiveItemDAO itemDAO, ReactiveCartsController cartsController,
+                                   ReactiveCartDAO cartDAO, Retry cartRetry, OperationCounters operationCounters) {
+        this.itemDAO = itemDAO;
+        this.cartsController = cartsController;
+        this.cartDAO = cartDAO;
+        this.cartRetry = cartRetry;
+        this.operationCounters = operationCounters;
+    }
+
+    @GetMapping(value = "/{itemId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Item> get(@PathVariable String customerId, @PathVariable String itemId) {
+        return cartsController.get(customerId).map(cart -> line(cart, new Item(itemId)));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<List<Item>> getItems(@PathVariable String customerId, ServerWebExchange exchange) {
+        return cartsController.get(customerId, exchange).map(Cart::contents);
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Item> addToCart(@PathVariable String customerId, @RequestBody Item item) {
+        return cartDAO.addItem(customerId, item)
+                .retryWhen(cartRetry)
+                .doOnNext(line -> LOG.debug("Added item to cart for user: {}, {}", customerId, line))
+                .doOnSuccess(line -> operationCounters.increment(Operation.ITEM_ADD));
+    }
+
+    /**
+     * @see ItemsController#batch(String, List)
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<List<ItemOperationResult>> batch(@PathVariable String customerId, @RequestBody List<ItemOperation> operations) {
+        if (operations.size() > ItemBatch.MAX_OPERATIONS) {
+            return Mono.error(new ItemBatchTooLargeException(operations.size()));
+        }
+        return cartsController.cart(customerId)
+                .flatMap(cart -> {
+                    ItemBatch batch = new ItemBatch(cart);
+                    List<ItemOperationResult> results = batch.apply(operations);
+                    if (!batch.changed()) {
+                        return Mono.just(results);
+                    }
+                    return cartDAO.save(cart)
+                            .thenMany(Flux.fromIterable(batch.toDestroy()).concatMap(itemDAO::destroy))
+                            .thenMany(Flux.fromIterable(batch.toSave()).concatMap(itemDAO::save))
+                            .then(Mono.just(results));
+                })
+                .retryWhen(cartRetry)
+                .doOnSuccess(results -> operationCounters.increment(Operation.ITEM_BATCH));
+    }
+
+    /**
+     * @see ItemsController#getOperationRates()
+     */
+    @GetMapping(value = "/metrics", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, OperationCounters.Rates> getOperationRates() {
+        return operationCounters.rates();
+    }
+
+    @DeleteMapping("/{itemId}")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> removeItem(@PathVariable String customerId, @PathVariable String itemId) {
+        return cartsController.cart(customerId)
+                .flatMap(cart -> {
+                    Item item = line(cart, new Item(itemId));
+                    LOG.debug("Removing item from cart: {}", item);
+                    return cartDAO.save(cart.remove(item)).then(itemDAO.destroy(item));
+                })
+                .retryWhen(cartRetry);
+    }
+
+    @PatchMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> updateItem(@PathVariable String customerId, @RequestBody Item item) {
+        return cartsController.cart(customerId)
+                .flatMap(cart -> {
+                    Item merged = new Item(line(cart, item), item.getQuantity()).nextVersion();
+                    LOG.debug("Merging item in cart for user: {}, {}", customerId, merged);
+                    return cartDAO.save(cart.update(merged)).then(itemDAO.save(merged));
+                })
+                .retryWhen(cartRetry)
+                .then();
+    }
+
+    private static Item line(Cart cart, Item item) {
+        return FoundItem.inCart(() -> cart, () -> item).get();
+    }
+}
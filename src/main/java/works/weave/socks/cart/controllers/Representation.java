@@ -0,0 +1,82 @@
+package works.weave.socks.cart.controllers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Formats the cart reads are served in. A binary format is only chosen when the client rates it
+ * above JSON, so that clients accepting anything keep getting JSON.
+ * <p>
+ * ETags are weak, as Tomcat does not compress responses with a strong one, and each format has
+ * its own.
+ */
+enum Representation {
+    JSON(MediaType.APPLICATION_JSON, "", null),
+    CBOR(MediaType.APPLICATION_CBOR, "-cbor", new CBORFactory()),
+    SMILE(MediaType.parseMediaType(Representation.APPLICATION_SMILE_VALUE), "-smile", new SmileFactory());
+
+    static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    private final MediaType mediaType;
+    private final String etagSuffix;
+    private final JsonFactory factory;
+
+    Representation(MediaType mediaType, String etagSuffix, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.etagSuffix = etagSuffix;
+        this.factory = factory;
+    }
+
+    static Representation of(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return JSON;
+        }
+        double[] qualities = new double[values().length];
+        try {
+            for (MediaType accepted : MediaType.parseMediaTypes(accept)) {
+                for (Representation representation : values()) {
+                    if (accepted.includes(representation.mediaType)) {
+                        qualities[representation.ordinal()] = Math.max(qualities[representation.ordinal()],
+                                accepted.getQualityValue());
+                    }
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        Representation chosen = JSON;
+        for (Representation representation : values()) {
+            if (qualities[representation.ordinal()] > qualities[chosen.ordinal()]) {
+                chosen = representation;
+            }
+        }
+        return chosen;
+    }
+
+    MediaType mediaType() {
+        return mediaType;
+    }
+
+    String etag(String revision) {
+        return "W/\"" + revision + etagSuffix + "\"";
+    }
+
+    /**
+     * JSON keeps the generator features of {@code writer}'s mapper; the binary formats use their
+     * own factories, and {@code writer} still serializes the values written to them.
+     */
+    JsonGenerator generator(ObjectWriter writer, OutputStream out) throws IOException {
+        return factory == null ? writer.createGenerator(out) : factory.createGenerator(out);
+    }
+}
@@ -1,43 +1,248 @@
 package works.weave.socks.cart.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @Document
 public class Cart {
 
+    /** Session carts whose merged quantities are remembered, the oldest being forgotten first. */
+    static final int MAX_MERGED_CARTS = 8;
+
+    // Un seul panier par client : l'index unique sert aussi toutes les recherches de panier
     @NotNull
+    @Indexed(unique = true)
     private String customerId;
 
     @Id
     private String id;
 
-    @DBRef
+    // Lu et écrit directement par le mapper Mongo (accès par champ) ; le reste du code passe par
+    // getItems(), en lecture seule, et par les méthodes de Cart qui tiennent les totaux à jour
     private List<Item> items = new ArrayList<>();
 
+    // Incrémentée à chaque écriture : la sauvegarde échoue si le panier a changé entre-temps
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    // Totaux enregistrés avec le panier et tenus à jour à chaque modification des lignes,
+    // pour servir le résumé du panier sans relire les lignes
+    @Setter(AccessLevel.NONE)
+    private int itemCount;
+
+    @Setter(AccessLevel.NONE)
+    private int lineCount;
+
+    // Sous-total en centimes : les ajouts et retraits successifs restent exacts
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private long subtotalCents;
+
+    // Quantités déjà fusionnées depuis chaque panier de session, par ordre de fusion : une fusion
+    // rejouée après un conflit n'ajoute que ce qui manque. Seules les dernières fusions sont gardées.
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private List<MergedLine> merged = new ArrayList<>();
+
+    // Index itemId -> position dans items, non persisté et reconstruit à la demande.
+    // Les lignes doivent donc être modifiées via les méthodes de Cart, pas via la liste.
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Map<String, Integer> positions;
+
     public Cart(String customerId) {
         this.customerId = customerId;
     }
 
+    // Copie profonde : les lignes sont aussi copiées
+    public Cart(Cart cart) {
+        this.customerId = cart.customerId;
+        this.id = cart.id;
+        this.version = cart.version;
+        this.itemCount = cart.itemCount;
+        this.lineCount = cart.lineCount;
+        this.subtotalCents = cart.subtotalCents;
+        cart.items.forEach(item -> this.items.add(new Item(item, item.getId())));
+        this.merged.addAll(cart.merged);
+    }
+
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
     public List<Item> contents() {
-        return items;
+        return getItems();
+    }
+
+    // Les lignes sont copiées et les totaux recalculés à partir d'elles
+    public void setItems(List<Item> items) {
+        this.items = new ArrayList<>(items);
+        this.positions = null;
+        this.itemCount = 0;
+        this.lineCount = 0;
+        this.subtotalCents = 0;
+        items.forEach(item -> count(item, 1));
+    }
+
+    // Révision du panier, qui change à chaque écriture : sert d'ETag aux lectures du panier.
+    // L'id en fait partie car la version repart de 1 quand le panier est supprimé puis recréé.
+    public String revision() {
+        return revision(id, version);
+    }
+
+    public static String revision(Object id, Object version) {
+        return id + "-" + version;
+    }
+
+    public double getSubtotal() {
+        return subtotalCents / 100.0;
+    }
+
+    // Prix d'une ligne en centimes, arrondi comme dans le pipeline de MongoCartDAO
+    public static long cents(Item item) {
+        return item.getQuantity() * Math.round(item.getUnitPrice() * 100.0);
+    }
+
+    /**
+     * @return the line for the same item as {@code item}, or null if the cart has none
+     */
+    public Item line(Item item) {
+        int index = indexOf(item);
+        return index < 0 ? null : items.get(index);
+    }
+
+    public boolean holds(Item item) {
+        return indexOf(item) >= 0;
     }
 
     public Cart add(Item item) {
         items.add(item);
+        count(item, 1);
+        if (positions != null) {
+            positions.putIfAbsent(item.getItemId(), items.size() - 1);
+        }
         return this;
     }
 
     public Cart remove(Item item) {
-        items.remove(item);
+        int index = indexOf(item);
+        if (index >= 0) {
+            count(items.remove(index), -1);
+            positions = null;
+        }
+        return this;
+    }
+
+    /**
+     * Adds the lines of {@code other} to this cart, summing quantities of lines for the same item.
+     * <p>
+     * Idempotent for a stored {@code other}: the quantities merged from it are recorded in this
+     * cart, and merging it again only adds what it gained since. A merge retried after this cart
+     * was written but {@code other} could not be deleted therefore adds nothing twice.
+     */
+    public Cart merge(Cart other) {
+        Map<String, Integer> alreadyMerged = new HashMap<>();
+        Map<String, Integer> merging = new LinkedHashMap<>();
+        for (MergedLine line : merged) {
+            if (line.cartId().equals(other.getId())) {
+                alreadyMerged.merge(line.itemId(), line.quantity(), Integer::sum);
+            }
+        }
+        for (Item item : other.items) {
+            merging.merge(item.getItemId(), item.getQuantity(), Integer::sum);
+            int skipped = Math.min(item.getQuantity(), alreadyMerged.getOrDefault(item.getItemId(), 0));
+            alreadyMerged.merge(item.getItemId(), -skipped, Integer::sum);
+            int quantity = item.getQuantity() - skipped;
+            if (quantity == 0) {
+                continue;
+            }
+            int index = indexOf(item);
+            if (index < 0) {
+                add(quantity == item.getQuantity() ? item : new Item(item, quantity));
+            } else {
+                Item existing = items.get(index);
+                replace(index, new Item(existing, existing.getQuantity() + quantity));
+            }
+        }
+        if (other.getId() != null) {
+            record(other.getId(), merging);
+        }
+        return this;
+    }
+
+    private void record(String cartId, Map<String, Integer> quantities) {
+        Map<String, Integer> recorded = new LinkedHashMap<>(quantities);
+        merged.removeIf(line -> {
+            if (!line.cartId().equals(cartId)) {
+                return false;
+            }
+            recorded.merge(line.itemId(), line.quantity(), Math::max);
+            return true;
+        });
+        recorded.forEach((itemId, quantity) -> merged.add(new MergedLine(cartId, itemId, quantity)));
+        List<String> cartIds = merged.stream().map(MergedLine::cartId).distinct().toList();
+        if (cartIds.size() > MAX_MERGED_CARTS) {
+            List<String> dropped = cartIds.subList(0, cartIds.size() - MAX_MERGED_CARTS);
+            merged.removeIf(line -> dropped.contains(line.cartId()));
+        }
+    }
+
+    public Cart update(Item item) {
+        int index = indexOf(item);
+        if (index < 0) {
+            add(item);
+        } else {
+            replace(index, item);
+        }
         return this;
     }
+
+    private void replace(int index, Item item) {
+        count(items.set(index, item), -1);
+        count(item, 1);
+    }
+
+    private void count(Item item, int sign) {
+        itemCount += sign * item.getQuantity();
+        lineCount += sign;
+        subtotalCents += sign * cents(item);
+    }
+
+    /**
+     * Quantity of an item already merged from a session cart.
+     */
+    public record MergedLine(String cartId, String itemId, int quantity) {
+    }
+
+    private int indexOf(Item item) {
+        if (positions == null) {
+            Map<String, Integer> built = new HashMap<>(Math.max(16, items.size() * 2));
+            for (int i = 0; i < items.size(); i++) {
+                built.putIfAbsent(items.get(i).getItemId(), i);
+            }
+            positions = built;
+        }
+        Integer index = positions.get(item.getItemId());
+        return index == null ? -1 : index;
+    }
 }
@@ -0,0 +1,26 @@
+package works.weave.socks.cart.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Totaux d'un panier, sans ses lignes
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummary {
+
+    private String customerId;
+    private int itemCount;
+    private int lineCount;
+    private double subtotal;
+
+    // Résumé d'un client sans panier
+    public CartSummary(String customerId) {
+        this(customerId, 0, 0, 0);
+    }
+
+    public CartSummary(Cart cart) {
+        this(cart.getCustomerId(), cart.getItemCount(), cart.getLineCount(), cart.getSubtotal());
+    }
+}
@@ -1,8 +1,10 @@
 package works.weave.socks.cart.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Objects;
@@ -22,19 +24,29 @@ public class Item {
     private int quantity;
     private float unitPrice;
 
+    // Version de la ligne : l'item n'est écrit dans la collection item que si elle y est plus récente
+    @Version
+    @JsonIgnore
+    private Long version;
+
     // Constructeur personnalisé pour initialiser par itemId seul
     public Item(String itemId) {
-        this(null, itemId, 1, 0F);
+        this(null, itemId, 1, 0F, null);
     }
 
     // Constructeur basé sur un autre Item et un nouvel id
     public Item(Item item, String id) {
-        this(id, item.itemId, item.quantity, item.unitPrice);
+        this(id, item.itemId, item.quantity, item.unitPrice, item.version);
     }
 
     // Constructeur basé sur un autre Item avec nouvelle quantité
     public Item(Item item, int quantity) {
-        this(item.getId(), item.itemId, quantity, item.unitPrice);
+        this(item.getId(), item.itemId, quantity, item.unitPrice, item.version);
+    }
+
+    // Copie à la version suivante : la ligne du panier porte la version à laquelle l'item sera écrit
+    public Item nextVersion() {
+        return new Item(id, itemId, quantity, unitPrice, version == null ? 1L : version + 1);
     }
 
     // equals uniquement sur itemId (conservation logique métier)
@@ -0,0 +1,25 @@
+package works.weave.socks.cart.entities;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Opération d'un lot sur les lignes d'un panier (POST /carts/{customerId}/items/batch)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemOperation {
+
+    public enum Type {
+        // Comme POST /items : ajoute la ligne, ou incrémente de 1 la quantité de la ligne existante
+        @JsonProperty("add") ADD,
+        // Comme PATCH /items : remplace la quantité de la ligne existante
+        @JsonProperty("set-quantity") SET_QUANTITY,
+        // Comme DELETE /items/{itemId}
+        @JsonProperty("remove") REMOVE
+    }
+
+    private Type op;
+    private Item item;
+}
@@ -0,0 +1,31 @@
+package works.weave.socks.cart.entities;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Résultat d'une opération d'un lot, dans l'ordre des opérations reçues
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemOperationResult {
+
+    public enum Status {
+        @JsonProperty("added") ADDED,
+        @JsonProperty("incremented") INCREMENTED,
+        @JsonProperty("updated") UPDATED,
+        @JsonProperty("removed") REMOVED,
+        // Ligne absente du panier : l'opération est ignorée, les autres sont appliquées
+        @JsonProperty("not-found") NOT_FOUND,
+        // Opération incomplète ou quantité inférieure à 1 : ignorée
+        @JsonProperty("invalid") INVALID
+    }
+
+    private ItemOperation.Type op;
+    private String itemId;
+    private Status status;
+
+    // Ligne du panier après l'opération, absente si la ligne a été retirée ou l'opération ignorée
+    private Item line;
+}
@@ -0,0 +1,32 @@
+package works.weave.socks.cart.item;
+
+import works.weave.socks.cart.cart.CartStorageMode;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.Collection;
+
+/**
+ * {@link ItemDAO} of {@link CartStorageMode#EMBEDDED} storage, where the cart lines are the only
+ * copy of the items: nothing is written to the item collection, whatever the endpoint, and
+ * nothing is found in it.
+ */
+public class EmbeddedItemDAO implements ItemDAO {
+
+    @Override
+    public Item save(Item item) {
+        return item;
+    }
+
+    @Override
+    public void destroy(Item item) {
+    }
+
+    @Override
+    public Item findOne(String id) {
+        return null;
+    }
+
+    @Override
+    public void saveAndDestroy(Collection<Item> toSave, Collection<Item> toDestroy) {
+    }
+}
@@ -0,0 +1,25 @@
+package works.weave.socks.cart.item;
+
+import reactor.core.publisher.Mono;
+import works.weave.socks.cart.entities.Item;
+
+/**
+ * Non-blocking counterpart of {@link EmbeddedItemDAO}.
+ */
+public class EmbeddedReactiveItemDAO implements ReactiveItemDAO {
+
+    @Override
+    public Mono<Item> save(Item item) {
+        return Mono.just(item);
+    }
+
+    @Override
+    public Mono<Void> destroy(Item item) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Item> findOne(String id) {
+        return Mono.empty();
+    }
+}
@@ -2,6 +2,7 @@ package works.weave.socks.cart.item;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import works.weave.socks.cart.entities.Cart;
 import works.weave.socks.cart.entities.Item;
 
 import java.util.List;
@@ -12,15 +13,35 @@ public class FoundItem implements Supplier<Item> {
     private static final Logger LOG = LoggerFactory.getLogger(FoundItem.class);
 
     private final Supplier<List<Item>> items;
+    private final Supplier<Cart> cart;
     private final Supplier<Item> item;
 
     public FoundItem(Supplier<List<Item>> items, Supplier<Item> item) {
+        this(items, null, item);
+    }
+
+    private FoundItem(Supplier<List<Item>> items, Supplier<Cart> cart, Supplier<Item> item) {
         this.items = items;
+        this.cart = cart;
         this.item = item;
     }
 
+    /**
+     * Looks the item up through the cart's line index instead of scanning its lines.
+     */
+    public static FoundItem inCart(Supplier<Cart> cart, Supplier<Item> item) {
+        return new FoundItem(() -> cart.get().contents(), cart, item);
+    }
+
     @Override
     public Item get() {
+        if (cart != null) {
+            Item line = cart.get().line(item.get());
+            if (line == null) {
+                throw new IllegalArgumentException("Cannot find item in cart");
+            }
+            return line;
+        }
         return items.get().stream()
                 .filter(item.get()::equals)
                 .findFirst()
@@ -28,10 +49,10 @@ public class FoundItem implements Supplier<Item> {
     }
 
     public boolean hasItem() {
-        boolean present = items.get().stream()
-                .anyMatch(item.get()::equals);
+        Item wanted = item.get();
+        boolean present = cart != null ? cart.get().holds(wanted) : items.get().contains(wanted);
 
-        LOG.debug("{} item: {}, in: {}", present ? "Found" : "Didn't find", item.get(), items.get());
+        LOG.debug("{} item: {}", present ? "Found" : "Didn't find", wanted);
         return present;
     }
 }
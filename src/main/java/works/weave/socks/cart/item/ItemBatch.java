@@ -0,0 +1,117 @@
+package works.weave.socks.cart.item;
+
+import org.bson.types.ObjectId;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.entities.ItemOperation;
+import works.weave.socks.cart.entities.ItemOperationResult;
+import works.weave.socks.cart.entities.ItemOperationResult.Status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a list of {@link ItemOperation}s to a cart in memory, in order, with the semantics of
+ * the single item endpoints. The item writes they imply are collected, latest per item, so that
+ * the caller can persist the cart and the items once at the end.
+ * <p>
+ * An operation that cannot be applied is reported and skipped; it does not fail the batch.
+ */
+public class ItemBatch {
+
+    public static final int MAX_OPERATIONS = 500;
+
+    private final Cart cart;
+    private final Map<String, Item> toSave = new LinkedHashMap<>();
+    private final Map<String, Item> toDestroy = new LinkedHashMap<>();
+    private boolean changed;
+
+    public ItemBatch(Cart cart) {
+        this.cart = cart;
+    }
+
+    /**
+     * @return one result per operation, in the same order
+     */
+    public List<ItemOperationResult> apply(List<ItemOperation> operations) {
+        List<ItemOperationResult> results = new ArrayList<>(operations.size());
+        for (ItemOperation operation : operations) {
+            results.add(apply(operation));
+        }
+        return results;
+    }
+
+    public ItemOperationResult apply(ItemOperation operation) {
+        if (operation == null || operation.getOp() == null || operation.getItem() == null
+                || operation.getItem().getItemId() == null) {
+            return new ItemOperationResult(operation == null ? null : operation.getOp(),
+                    operation == null || operation.getItem() == null ? null : operation.getItem().getItemId(),
+                    Status.INVALID, null);
+        }
+        Item item = operation.getItem();
+        Item existing = cart.line(item);
+        return switch (operation.getOp()) {
+            case ADD -> existing == null
+                    ? result(operation, Status.ADDED, write(new Item(item, item.getId() != null ? item.getId() : newId())))
+                    : result(operation, Status.INCREMENTED, write(new Item(existing, existing.getQuantity() + 1)));
+            case SET_QUANTITY -> {
+                if (existing == null) {
+                    yield result(operation, Status.NOT_FOUND, null);
+                }
+                if (item.getQuantity() < 1) {
+                    yield result(operation, Status.INVALID, existing);
+                }
+                Item merged = write(new Item(existing, item.getQuantity()).nextVersion());
+                toSave.put(merged.getItemId(), merged);
+                yield result(operation, Status.UPDATED, merged);
+            }
+            case REMOVE -> {
+                if (existing == null) {
+                    yield result(operation, Status.NOT_FOUND, null);
+                }
+                cart.remove(existing);
+                toSave.remove(existing.getItemId());
+                toDestroy.put(existing.getItemId(), existing);
+                changed = true;
+                yield result(operation, Status.REMOVED, null);
+            }
+        };
+    }
+
+    /**
+     * @return whether the cart has to be saved
+     */
+    public boolean changed() {
+        return changed;
+    }
+
+    public Collection<Item> toSave() {
+        return toSave.values();
+    }
+
+    public Collection<Item> toDestroy() {
+        return toDestroy.values();
+    }
+
+    private Item write(Item line) {
+        cart.update(line);
+        toSave.computeIfPresent(line.getItemId(), (itemId, saved) -> line);
+        changed = true;
+        return line;
+    }
+
+    /**
+     * Ids of new lines, assigned like a POST does: later writes of the line's item then all go to
+     * the same item document.
+     */
+    private static String newId() {
+        return new ObjectId().toHexString();
+    }
+
+    private static ItemOperationResult result(ItemOperation operation, Status status, Item line) {
+        return new ItemOperationResult(operation.getOp(), operation.getItem().getItemId(), status, line);
+    }
+}
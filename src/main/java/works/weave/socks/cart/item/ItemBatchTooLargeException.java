@@ -0,0 +1,12 @@
+package works.weave.socks.cart.item;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class ItemBatchTooLargeException extends RuntimeException {
+
+    public ItemBatchTooLargeException(int operations) {
+        super("Batch of " + operations + " operations exceeds the limit of " + ItemBatch.MAX_OPERATIONS);
+    }
+}
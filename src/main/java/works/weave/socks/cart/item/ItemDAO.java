@@ -2,6 +2,7 @@ package works.weave.socks.cart.item;
 
 import works.weave.socks.cart.entities.Item;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +13,14 @@ public interface ItemDAO {
 
     Item findOne(String id);
 
+    /**
+     * Destroys then saves several items at once. Implementations may send them as a single batch.
+     */
+    default void saveAndDestroy(Collection<Item> toSave, Collection<Item> toDestroy) {
+        toDestroy.forEach(this::destroy);
+        toSave.forEach(this::save);
+    }
+
     class Fake implements ItemDAO {
         private final Map<String, Item> store = new HashMap<>();
 
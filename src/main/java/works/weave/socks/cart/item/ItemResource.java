@@ -29,12 +29,12 @@ public class ItemResource implements Resource<Item> {
         return item;
     }
 
+    /**
+     * Writes the item alone. An item held in a cart is written after the cart, from its line, so
+     * that a cart conflict leaves the item untouched.
+     */
     @Override
     public Runnable merge(Item toMerge) {
-        return () -> {
-            Item base = item.get();
-            Item merged = new Item(base, toMerge.getQuantity());
-            itemRepository.save(merged);
-        };
+        return () -> itemRepository.save(new Item(item.get(), toMerge.getQuantity()).nextVersion());
     }
 }
@@ -0,0 +1,56 @@
+package works.weave.socks.cart.item;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import works.weave.socks.cart.cart.MeteredCartDAO;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.Collection;
+
+/**
+ * Times every call to the wrapped {@link ItemDAO}, like {@link MeteredCartDAO} does for carts.
+ */
+public class MeteredItemDAO implements ItemDAO {
+
+    private final ItemDAO itemDAO;
+    private final Timer save;
+    private final Timer destroy;
+    private final Timer findOne;
+    private final Timer saveAndDestroy;
+
+    public MeteredItemDAO(ItemDAO itemDAO, MeterRegistry meterRegistry) {
+        this.itemDAO = itemDAO;
+        this.save = timer("save", meterRegistry);
+        this.destroy = timer("destroy", meterRegistry);
+        this.findOne = timer("findOne", meterRegistry);
+        this.saveAndDestroy = timer("saveAndDestroy", meterRegistry);
+    }
+
+    private static Timer timer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder(MeteredCartDAO.METRIC_NAME)
+                .description("Duration of data access calls")
+                .tag("dao", "item")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Item save(Item item) {
+        return save.record(() -> itemDAO.save(item));
+    }
+
+    @Override
+    public void destroy(Item item) {
+        destroy.record(() -> itemDAO.destroy(item));
+    }
+
+    @Override
+    public Item findOne(String id) {
+        return findOne.record(() -> itemDAO.findOne(id));
+    }
+
+    @Override
+    public void saveAndDestroy(Collection<Item> toSave, Collection<Item> toDestroy) {
+        saveAndDestroy.record(() -> itemDAO.saveAndDestroy(toSave, toDestroy));
+    }
+}
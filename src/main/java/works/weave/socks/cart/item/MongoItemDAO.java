@@ -0,0 +1,187 @@
+package works.weave.socks.cart.item;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.conversions.Bson;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link ItemDAO} backed by {@link MongoTemplate}. Items mirror cart lines and are written after
+ * the cart, at the version their line carries ({@link Item#nextVersion()}): a write only lands if
+ * the stored item is older, so that writes following successive cart versions may arrive in any
+ * order.
+ */
+public class MongoItemDAO implements ItemDAO {
+
+    private static final String ID = "_id";
+    private static final String VERSION = "version";
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoItemDAO(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Writes the item unless the stored one has a more recent version. Items that are not stored
+     * yet (a line whose item was lost, or written before it was mirrored) are inserted.
+     *
+     * @throws OptimisticLockingFailureException if another write already stored the same version:
+     *                                           both were computed from the same read
+     */
+    @Override
+    public Item save(Item item) {
+        Document document = document(item);
+        try {
+            itemCollection().replaceOne(older(item), document, new ReplaceOptions().upsert(true));
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            checkNotConcurrent(List.of(item));
+        }
+        return item;
+    }
+
+    /**
+     * Sends every delete and every save in a single unordered bulk write, each save landing like
+     * {@link #save(Item)} does.
+     *
+     * @throws OptimisticLockingFailureException if another write already stored the version of a
+     *                                           saved item
+     */
+    @Override
+    public void saveAndDestroy(Collection<Item> toSave, Collection<Item> toDestroy) {
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (Item item : toDestroy) {
+            if (item.getId() != null) {
+                writes.add(new DeleteOneModel<>(Filters.eq(ID, id(item))));
+            }
+        }
+        int firstSave = writes.size();
+        List<Item> saved = new ArrayList<>(toSave);
+        for (Item item : saved) {
+            Document document = document(item);
+            writes.add(new ReplaceOneModel<>(older(item), document, new ReplaceOptions().upsert(true)));
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            itemCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            List<Item> skipped = new ArrayList<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCategory() != ErrorCategory.DUPLICATE_KEY || error.getIndex() < firstSave) {
+                    throw e;
+                }
+                skipped.add(saved.get(error.getIndex() - firstSave));
+            }
+            checkNotConcurrent(skipped);
+        }
+    }
+
+    /**
+     * Inserts those of {@code items} that are not stored, in a single unordered bulk write, and
+     * leaves the stored ones as they are, whatever their version. Assigns an id to new items.
+     */
+    public void insertIfAbsent(Collection<Item> items) {
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (Item item : items) {
+            Document document = document(item);
+            document.remove(ID);
+            writes.add(new UpdateOneModel<>(Filters.eq(ID, id(item)), new Document("$setOnInsert", document),
+                    new UpdateOptions().upsert(true)));
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            itemCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // A concurrent upsert inserted the same item first
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts {@code item} to the document to store. Assigns an id and a first version to new items.
+     */
+    private Document document(Item item) {
+        if (item.getId() == null) {
+            item.setId(new ObjectId().toHexString());
+        }
+        if (item.getVersion() == null) {
+            item.setVersion(1L);
+        }
+        Document document = new Document();
+        mongoTemplate.getConverter().write(item, document);
+        return document;
+    }
+
+    /**
+     * Matches the stored item if it has an older version, or none.
+     */
+    private Bson older(Item item) {
+        return Filters.and(Filters.eq(ID, id(item)), Filters.not(Filters.gte(VERSION, item.getVersion())));
+    }
+
+    /**
+     * The upserts of {@code skipped} found their item stored with a version at least as recent:
+     * more recent ones are simply outdated, the same one means a concurrent write.
+     */
+    private void checkNotConcurrent(List<Item> skipped) {
+        for (Item item : skipped) {
+            if (itemCollection().countDocuments(Filters.and(Filters.eq(ID, id(item)), Filters.eq(VERSION, item.getVersion()))) > 0) {
+                throw new OptimisticLockingFailureException("Item " + item.getItemId() + " was modified concurrently");
+            }
+        }
+    }
+
+    private Object id(Item item) {
+        return mongoTemplate.getConverter().convertId(item.getId(), ObjectId.class);
+    }
+
+    /**
+     * Deletes by id only: the item may never have been stored, and removing a line must not fail
+     * because of a concurrent quantity update.
+     */
+    @Override
+    public void destroy(Item item) {
+        if (item.getId() != null) {
+            itemCollection().deleteOne(Filters.eq(ID, id(item)));
+        }
+    }
+
+    @Override
+    public Item findOne(String id) {
+        return mongoTemplate.findById(id, Item.class);
+    }
+
+    private MongoCollection<Document> itemCollection() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Item.class));
+    }
+}
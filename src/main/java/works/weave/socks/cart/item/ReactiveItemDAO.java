@@ -0,0 +1,15 @@
+package works.weave.socks.cart.item;
+
+import reactor.core.publisher.Mono;
+import works.weave.socks.cart.entities.Item;
+
+/**
+ * Non-blocking counterpart of {@link ItemDAO}.
+ */
+public interface ReactiveItemDAO {
+    Mono<Item> save(Item item);
+
+    Mono<Void> destroy(Item item);
+
+    Mono<Item> findOne(String id);
+}
@@ -0,0 +1,73 @@
+package works.weave.socks.cart.item;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.repositories.ReactiveItemRepository;
+
+/**
+ * {@link ReactiveItemDAO} writing items like {@link MongoItemDAO}: only over older versions.
+ */
+public class ReactiveMongoItemDAO implements ReactiveItemDAO {
+
+    private static final String ID = "_id";
+    private static final String VERSION = "version";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReactiveItemRepository itemRepository;
+
+    public ReactiveMongoItemDAO(ReactiveMongoTemplate mongoTemplate, ReactiveItemRepository itemRepository) {
+        this.mongoTemplate = mongoTemplate;
+        this.itemRepository = itemRepository;
+    }
+
+    /**
+     * @see MongoItemDAO#save(Item)
+     */
+    @Override
+    public Mono<Item> save(Item item) {
+        return Mono.defer(() -> {
+            if (item.getId() == null) {
+                item.setId(new ObjectId().toHexString());
+            }
+            if (item.getVersion() == null) {
+                item.setVersion(1L);
+            }
+            Object id = mongoTemplate.getConverter().convertId(item.getId(), ObjectId.class);
+
+            Document document = new Document();
+            mongoTemplate.getConverter().write(item, document);
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Item.class))
+                    .flatMap(collection -> Mono.from(collection.replaceOne(
+                                    Filters.and(Filters.eq(ID, id), Filters.not(Filters.gte(VERSION, item.getVersion()))),
+                                    document, new ReplaceOptions().upsert(true)))
+                            .then()
+                            .onErrorResume(e -> e instanceof MongoWriteException write
+                                            && write.getError().getCategory() == ErrorCategory.DUPLICATE_KEY,
+                                    e -> Mono.from(collection.countDocuments(
+                                                    Filters.and(Filters.eq(ID, id), Filters.eq(VERSION, item.getVersion()))))
+                                            .flatMap(same -> same > 0
+                                                    ? Mono.error(new OptimisticLockingFailureException(
+                                                            "Item " + item.getItemId() + " was modified concurrently", e))
+                                                    : Mono.empty())))
+                    .thenReturn(item);
+        });
+    }
+
+    @Override
+    public Mono<Void> destroy(Item item) {
+        return item.getId() == null ? Mono.empty() : itemRepository.deleteById(item.getId());
+    }
+
+    @Override
+    public Mono<Item> findOne(String id) {
+        return itemRepository.findById(id);
+    }
+}
@@ -0,0 +1,117 @@
+package works.weave.socks.cart.middleware;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks the database from a background thread on a fixed interval and keeps the last result,
+ * so that health requests and probes are answered without any I/O.
+ * <p>
+ * A check that takes longer than the timeout counts as a failure. While a timed out check is still
+ * stuck, no other one is started; the database stays reported down until one completes.
+ * <p>
+ * The check runs on the prober's own thread and may block it, so the same prober serves the
+ * servlet variant with the blocking client and the reactive one with the reactive client.
+ */
+public class DatabaseHealthProber implements HealthIndicator, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseHealthProber.class);
+
+    /** Cheap command answered by any reachable server, whatever its role. */
+    public static final String CHECK_COMMAND = "{ buildInfo: 1 }";
+
+    /**
+     * @param checkedAt when the check completed, null if none has yet
+     * @param error     why the last check failed, null if it succeeded
+     */
+    public record Status(boolean up, Instant checkedAt, String error) {
+    }
+
+    private final Runnable check;
+    private final Duration interval;
+    private final Duration timeout;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService checks;
+
+    private volatile Status status = new Status(false, null, "Not checked yet");
+    private Future<?> running;
+
+    /**
+     * @param check sends {@link #CHECK_COMMAND} and returns once the server has answered
+     */
+    public DatabaseHealthProber(Runnable check, Duration interval, Duration timeout) {
+        this.check = check;
+        this.interval = interval;
+        this.timeout = timeout;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "health-prober"));
+        this.checks = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "health-check"));
+        scheduler.scheduleWithFixedDelay(this::probe, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    @Override
+    public Health health() {
+        Status current = status;
+        Health.Builder health = current.up() ? Health.up() : Health.down();
+        if (current.checkedAt() != null) {
+            health.withDetail("checkedAt", current.checkedAt())
+                    .withDetail("ageMs", Duration.between(current.checkedAt(), Instant.now()).toMillis());
+        }
+        if (current.error() != null) {
+            health.withDetail("error", current.error());
+        }
+        return health.withDetail("interval", interval.toString()).build();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        checks.shutdownNow();
+    }
+
+    private void probe() {
+        if (running != null && !running.isDone()) {
+            status = new Status(false, Instant.now(), "Previous check still running");
+            return;
+        }
+        running = checks.submit(check);
+        Status next;
+        try {
+            running.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            next = new Status(true, Instant.now(), null);
+        } catch (TimeoutException e) {
+            running.cancel(true);
+            next = new Status(false, Instant.now(), "Timed out after " + timeout);
+        } catch (ExecutionException e) {
+            next = new Status(false, Instant.now(), e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (next.up() != status.up() || status.checkedAt() == null) {
+            LOG.warn("Database is {}{}", next.up() ? "up" : "down", next.error() == null ? "" : ": " + next.error());
+        }
+        status = next;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
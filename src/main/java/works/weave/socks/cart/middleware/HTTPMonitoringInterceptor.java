@@ -1,87 +1,108 @@
 package works.weave.socks.cart.middleware;
 
-import io.prometheus.client.Histogram;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
-import org.springframework.web.servlet.mvc.condition.PatternsRequestCondition;
-import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.servlet.HandlerMapping;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Records the latency of every request matched by a handler, labelled with its route template.
+ * <p>
+ * The template is the one Spring MVC already resolved for the request, and timers are cached per
+ * route, method and status, so recording a request does not look meters up once warm. Latency is
+ * recorded on completion, which also covers requests whose handler threw.
+ * <p>
+ * SLO buckets and percentiles of {@code http.request.duration} are set with the
+ * {@code management.metrics.distribution.*} properties.
+ * <p>
+ * The number of Mongo commands each request sent, counted by {@link MongoCommandMetrics}, is
+ * recorded per route as {@code http.request.db.calls}.
+ */
 public class HTTPMonitoringInterceptor implements HandlerInterceptor {
 
-    private static final Histogram requestLatency = Histogram.build()
-            .name("http_request_duration_seconds")
-            .help("Request duration in seconds.")
-            .labelNames("service", "method", "path", "status_code")
-            .register();
+    public static final String METRIC_NAME = "http.request.duration";
+    public static final String DB_CALLS_METRIC_NAME = "http.request.db.calls";
 
-    private static final String START_TIME_KEY = "startTime";
+    private static final String START_TIME_KEY = HTTPMonitoringInterceptor.class.getName() + ".startTime";
+    private static final int MAX_STATUS = 600;
 
-    @Autowired
-    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+    private final String serviceName;
+    private final MeterRegistry meterRegistry;
 
-    private Set<PatternsRequestCondition> urlPatterns;
+    /** Route template -> method -> status -> timer. */
+    private final Map<String, Map<String, AtomicReferenceArray<Timer>>> timers = new ConcurrentHashMap<>();
 
-    @Value("${spring.application.name:carts}")
-    private String serviceName;
+    /** Route template -> method -> database calls per request. */
+    private final Map<String, Map<String, DistributionSummary>> dbCalls = new ConcurrentHashMap<>();
+
+    public HTTPMonitoringInterceptor(String serviceName, MeterRegistry meterRegistry) {
+        this.serviceName = serviceName;
+        this.meterRegistry = meterRegistry;
+    }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        request.setAttribute(START_TIME_KEY, System.nanoTime());
+        if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            request.setAttribute(START_TIME_KEY, System.nanoTime());
+        }
         return true;
     }
 
     @Override
-    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
-                           ModelAndView modelAndView) {
-        Object attr = request.getAttribute(START_TIME_KEY);
-        if (attr instanceof Long startTime) {
-            long elapsed = System.nanoTime() - startTime;
-            double seconds = elapsed / 1_000_000_000.0;
-            String matchedUrl = getMatchingURLPattern(request);
-
-            if (!matchedUrl.isEmpty()) {
-                requestLatency.labels(
-                        serviceName,
-                        request.getMethod(),
-                        matchedUrl,
-                        Integer.toString(response.getStatus())
-                ).observe(seconds);
-            }
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST
+                || !(request.getAttribute(START_TIME_KEY) instanceof Long startTime)
+                || !(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) instanceof String route)) {
+            return;
         }
+        // The container only turns an unhandled exception into a 500 after the interceptors ran
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        timer(route, request.getMethod(), status).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        dbCalls(route, request.getMethod()).record(MongoCommandMetrics.calls(request));
     }
 
-    @Override
-    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
-        // No-op
+    private DistributionSummary dbCalls(String route, String method) {
+        return dbCalls
+                .computeIfAbsent(route, r -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> DistributionSummary.builder(DB_CALLS_METRIC_NAME)
+                        .description("Mongo commands sent per request")
+                        .tag("service", serviceName)
+                        .tag("method", m)
+                        .tag("path", route)
+                        .register(meterRegistry));
     }
 
-    private String getMatchingURLPattern(HttpServletRequest request) {
-        for (PatternsRequestCondition pattern : getUrlPatterns()) {
-            if (pattern != null &&
-                    pattern.getMatchingCondition(request) != null &&
-                    !"/error".equals(request.getServletPath())) {
-                return pattern.getMatchingCondition(request)
-                        .getPatterns().stream().findFirst().orElse("");
-            }
+    private Timer timer(String route, String method, int status) {
+        AtomicReferenceArray<Timer> byStatus = timers
+                .computeIfAbsent(route, r -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> new AtomicReferenceArray<>(MAX_STATUS));
+        if (status < 0 || status >= MAX_STATUS) {
+            return register(route, method, status);
         }
-        return "";
+        Timer timer = byStatus.get(status);
+        if (timer == null) {
+            timer = register(route, method, status);
+            byStatus.set(status, timer);
+        }
+        return timer;
     }
 
-    private Set<PatternsRequestCondition> getUrlPatterns() {
-        if (this.urlPatterns == null) {
-            this.urlPatterns = new HashSet<>();
-            requestMappingHandlerMapping.getHandlerMethods().forEach((mapping, method) -> {
-                PatternsRequestCondition pattern = mapping.getPatternsCondition();
-                if (pattern != null) this.urlPatterns.add(pattern);
-            });
-        }
-        return this.urlPatterns;
+    private Timer register(String route, String method, int status) {
+        return Timer.builder(METRIC_NAME)
+                .description("Request duration")
+                .tag("service", serviceName)
+                .tag("method", method)
+                .tag("path", route)
+                .tag("status_code", Integer.toString(status))
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,91 @@
+package works.weave.socks.cart.middleware;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the Mongo commands sent by the application: size of the documents written and read
+ * per command, and the number of commands sent while serving each HTTP request.
+ * <p>
+ * The per-request count relies on the synchronous driver firing events on the request thread;
+ * {@link HTTPMonitoringInterceptor} records it per route once the request completes.
+ */
+public class MongoCommandMetrics implements CommandListener {
+
+    private static final String DB_CALLS_ATTRIBUTE = MongoCommandMetrics.class.getName() + ".calls";
+    private static final BsonDocumentCodec CODEC = new BsonDocumentCodec();
+
+    private final MeterRegistry meterRegistry;
+    private final boolean measureWrittenSize;
+    private final Map<String, DistributionSummary> written = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> read = new ConcurrentHashMap<>();
+
+    /**
+     * @param measureWrittenSize whether to measure commands, which have to be encoded again to do so
+     */
+    public MongoCommandMetrics(MeterRegistry meterRegistry, boolean measureWrittenSize) {
+        this.meterRegistry = meterRegistry;
+        this.measureWrittenSize = measureWrittenSize;
+    }
+
+    /**
+     * @return the number of Mongo commands sent so far while serving {@code request}
+     */
+    public static int calls(HttpServletRequest request) {
+        return request.getAttribute(DB_CALLS_ATTRIBUTE) instanceof AtomicInteger calls ? calls.get() : 0;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            if (attributes.getAttribute(DB_CALLS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof AtomicInteger calls) {
+                calls.incrementAndGet();
+            } else {
+                attributes.setAttribute(DB_CALLS_ATTRIBUTE, new AtomicInteger(1), RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+        if (measureWrittenSize) {
+            summary(written, event.getCommandName(), "written").record(size(event.getCommand()));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        summary(read, event.getCommandName(), "read").record(size(event.getResponse()));
+    }
+
+    private DistributionSummary summary(Map<String, DistributionSummary> summaries, String command, String direction) {
+        return summaries.computeIfAbsent(command, c -> DistributionSummary.builder("carts.db.document.size")
+                .description("Size of the documents exchanged with Mongo")
+                .baseUnit("bytes")
+                .tag("command", c)
+                .tag("direction", direction)
+                .register(meterRegistry));
+    }
+
+    private static int size(BsonDocument document) {
+        if (document instanceof RawBsonDocument raw) {
+            return raw.getByteBuffer().remaining();
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        CODEC.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer.getSize();
+    }
+}
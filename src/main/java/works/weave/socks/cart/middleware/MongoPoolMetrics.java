@@ -0,0 +1,62 @@
+package works.weave.socks.cart.middleware;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long operations wait for a connection from the Mongo pool, as
+ * {@code carts.db.pool.wait}. Pool size, checked out connections and wait queue size are already
+ * published by Spring Boot as the {@code mongodb.driver.pool.*} gauges.
+ * <p>
+ * The synchronous driver checks connections out on the calling thread, which is where the start
+ * of the wait is kept. Asynchronous checkouts completing on another thread are not measured.
+ */
+public class MongoPoolMetrics implements ConnectionPoolListener {
+
+    public static final String METRIC_NAME = "carts.db.pool.wait";
+
+    private final ThreadLocal<Long> checkOutStarted = new ThreadLocal<>();
+    private final Timer checkedOut;
+    private final Timer failed;
+
+    public MongoPoolMetrics(MeterRegistry meterRegistry) {
+        this.checkedOut = timer("checked_out", meterRegistry);
+        this.failed = timer("failed", meterRegistry);
+    }
+
+    private static Timer timer(String result, MeterRegistry meterRegistry) {
+        return Timer.builder(METRIC_NAME)
+                .description("Time spent waiting for a pooled Mongo connection")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        checkOutStarted.set(System.nanoTime());
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        record(checkedOut);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        record(failed);
+    }
+
+    private void record(Timer timer) {
+        Long started = checkOutStarted.get();
+        if (started != null) {
+            checkOutStarted.remove();
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
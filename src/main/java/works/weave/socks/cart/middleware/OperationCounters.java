@@ -0,0 +1,129 @@
+package works.weave.socks.cart.middleware;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts completed cart operations and derives their throughput over the last 1 and 5 minutes.
+ * <p>
+ * Counting is a {@link LongAdder} increment, also exported as the {@code carts.operations}
+ * counter. Rates come from totals sampled every {@link #SAMPLE_INTERVAL} by a background thread,
+ * so the request path never touches the sliding windows.
+ */
+public class OperationCounters implements AutoCloseable {
+
+    public enum Operation {
+        CART_READ("cart.read"),
+        CART_SUMMARY("cart.summary"),
+        CART_DELETE("cart.delete"),
+        CART_MERGE("cart.merge"),
+        ITEM_ADD("item.add"),
+        ITEM_BATCH("item.batch");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public record Rates(long count, double perSecond1m, double perSecond5m) {
+    }
+
+    static final Duration SAMPLE_INTERVAL = Duration.ofSeconds(5);
+    private static final int SAMPLES = (int) (Duration.ofMinutes(5).toSeconds() / SAMPLE_INTERVAL.toSeconds()) + 1;
+
+    private final Map<Operation, LongAdder> counts = new EnumMap<>(Operation.class);
+    private final ScheduledExecutorService sampler;
+
+    /** Ring of sampled totals, indexed by operation ordinal then sample. */
+    private final long[][] samples = new long[Operation.values().length][SAMPLES];
+    private final long[] sampledAt = new long[SAMPLES];
+    private int next;
+    private int taken;
+
+    public OperationCounters(MeterRegistry meterRegistry) {
+        for (Operation operation : Operation.values()) {
+            LongAdder count = new LongAdder();
+            counts.put(operation, count);
+            FunctionCounter.builder("carts.operations", count, LongAdder::sum)
+                    .description("Completed cart operations")
+                    .tag("operation", operation.tag)
+                    .register(meterRegistry);
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "operation-rates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sample();
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL.toMillis(), SAMPLE_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void increment(Operation operation) {
+        counts.get(operation).increment();
+    }
+
+    /**
+     * @return totals and per-second rates of every operation, keyed by operation name
+     */
+    public Map<String, Rates> rates() {
+        long now = System.nanoTime();
+        Map<String, Rates> rates = new LinkedHashMap<>();
+        synchronized (samples) {
+            for (Operation operation : Operation.values()) {
+                long count = counts.get(operation).sum();
+                rates.put(operation.tag, new Rates(count,
+                        rate(operation, count, now, Duration.ofMinutes(1)),
+                        rate(operation, count, now, Duration.ofMinutes(5))));
+            }
+        }
+        return rates;
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        synchronized (samples) {
+            for (Operation operation : Operation.values()) {
+                samples[operation.ordinal()][next] = counts.get(operation).sum();
+            }
+            sampledAt[next] = now;
+            next = (next + 1) % SAMPLES;
+            taken = Math.min(taken + 1, SAMPLES);
+        }
+    }
+
+    /**
+     * Rate since the most recent sample at least {@code window} old, or the oldest one while the
+     * service has been up for less than the window.
+     */
+    private double rate(Operation operation, long count, long now, Duration window) {
+        int index = -1;
+        for (int age = 1; age <= taken; age++) {
+            index = Math.floorMod(next - age, SAMPLES);
+            if (now - sampledAt[index] >= window.toNanos()) {
+                break;
+            }
+        }
+        if (index < 0 || now == sampledAt[index]) {
+            return 0;
+        }
+        double seconds = (now - sampledAt[index]) / 1e9;
+        return (count - samples[operation.ordinal()][index]) / seconds;
+    }
+}
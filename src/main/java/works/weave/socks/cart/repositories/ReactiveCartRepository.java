@@ -0,0 +1,9 @@
+package works.weave.socks.cart.repositories;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import works.weave.socks.cart.entities.Cart;
+
+public interface ReactiveCartRepository extends ReactiveMongoRepository<Cart, String> {
+    Flux<Cart> findByCustomerId(String id);
+}
@@ -0,0 +1,7 @@
+package works.weave.socks.cart.repositories;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import works.weave.socks.cart.entities.Item;
+
+public interface ReactiveItemRepository extends ReactiveMongoRepository<Item, String> {
+}
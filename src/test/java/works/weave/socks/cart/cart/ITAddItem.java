@@ -0,0 +1,132 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The add-or-increment update pipeline of {@link MongoCartDAO#addItem} against a real server.
+ */
+class ITAddItem {
+
+    private static final String CUSTOMER_ID = "customer";
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoCartDAO cartDAO;
+
+    @BeforeAll
+    static void startMongod() {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        client = MongoClients.create("mongodb://" + mongod.current().getServerAddress());
+    }
+
+    @AfterAll
+    static void stopMongod() {
+        if (client != null) {
+            client.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = new MongoTemplate(client, "data");
+        mongoTemplate.getDb().drop();
+        cartDAO = new MongoCartDAO(mongoTemplate, CartStorageMode.EMBEDDED, true);
+    }
+
+    @Test
+    void incrementsTheExistingLine() {
+        cartDAO.addItem(CUSTOMER_ID, item("sock"));
+        Item line = cartDAO.addItem(CUSTOMER_ID, item("sock"));
+
+        assertThat(line.getQuantity()).isEqualTo(2);
+        Cart cart = cart();
+        assertThat(cart.getItems()).hasSize(1);
+        assertThat(cart.getItemCount()).isEqualTo(2);
+        assertThat(cart.getSubtotal()).isEqualTo(3.0);
+    }
+
+    @Test
+    void appendsANewLine() {
+        cartDAO.addItem(CUSTOMER_ID, item("sock"));
+        Item line = cartDAO.addItem(CUSTOMER_ID, item("shoe"));
+
+        assertThat(line.getQuantity()).isEqualTo(1);
+        assertThat(line.getId()).isNotNull();
+        assertThat(cart().getItems()).extracting(Item::getItemId).containsExactly("sock", "shoe");
+    }
+
+    @Test
+    void dollarPrefixedItemIdsAreValuesNotExpressions() {
+        cartDAO.addItem(CUSTOMER_ID, item("sock"));
+        cartDAO.addItem(CUSTOMER_ID, item("$$this.itemId"));
+        cartDAO.addItem(CUSTOMER_ID, item("$items"));
+        cartDAO.addItem(CUSTOMER_ID, item("$items"));
+
+        Cart cart = cart();
+        assertThat(cart.getItems()).extracting(Item::getItemId).containsExactly("sock", "$$this.itemId", "$items");
+        assertThat(cart.getItems()).extracting(Item::getQuantity).containsExactly(1, 1, 2);
+        assertThat(cart.getItemCount()).isEqualTo(4);
+    }
+
+    @Test
+    void concurrentAddsOfTheSameItemAreAllCounted() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> adds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            adds.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < ADDS_PER_THREAD; j++) {
+                    cartDAO.addItem(CUSTOMER_ID, item("sock"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> add : adds) {
+            add.get();
+        }
+        executor.shutdown();
+
+        assertThat(cartDAO.findByCustomerId(CUSTOMER_ID)).hasSize(1);
+        Cart cart = cart();
+        assertThat(cart.getItems()).hasSize(1);
+        assertThat(cart.getItems().get(0).getQuantity()).isEqualTo(THREADS * ADDS_PER_THREAD);
+        assertThat(cart.getItemCount()).isEqualTo(THREADS * ADDS_PER_THREAD);
+    }
+
+    private Cart cart() {
+        return cartDAO.findByCustomerId(CUSTOMER_ID).get(0);
+    }
+
+    private static Item item(String itemId) {
+        return new Item(null, itemId, 1, 1.5F, null);
+    }
+}
@@ -0,0 +1,95 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.item.MongoItemDAO;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link CartStorageMode#DBREF} carts against a real server: every saved reference points to a
+ * stored item, even when the item of an existing line was lost.
+ */
+class ITCartReferences {
+
+    private static final String CUSTOMER_ID = "customer";
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoTemplate mongoTemplate;
+    private MongoCartDAO cartDAO;
+
+    @BeforeAll
+    static void startMongod() {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        client = MongoClients.create("mongodb://" + mongod.current().getServerAddress());
+    }
+
+    @AfterAll
+    static void stopMongod() {
+        if (client != null) {
+            client.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(client, "data");
+        mongoTemplate.getDb().drop();
+        cartDAO = new MongoCartDAO(mongoTemplate, CartStorageMode.DBREF, false);
+    }
+
+    @Test
+    void newLinesAreStoredAsItems() {
+        cartDAO.save(new Cart(CUSTOMER_ID).add(new Item(null, "sock", 2, 1.5F, null)));
+
+        Item line = cart().line(new Item("sock"));
+        assertThat(line.getQuantity()).isEqualTo(2);
+        assertThat(mongoTemplate.findById(line.getId(), Item.class)).isNotNull();
+    }
+
+    @Test
+    void lostItemsAreStoredAgainWithTheCart() {
+        cartDAO.save(new Cart(CUSTOMER_ID).add(new Item(null, "sock", 2, 1.5F, null)));
+        Cart cart = cart();
+        String id = cart.line(new Item("sock")).getId();
+        mongoTemplate.dropCollection(Item.class);
+
+        cartDAO.save(cart.add(new Item(null, "shoe", 1, 20F, null)));
+
+        assertThat(mongoTemplate.findById(id, Item.class)).isNotNull();
+        assertThat(cart().getItems()).extracting(Item::getItemId).containsExactlyInAnyOrder("sock", "shoe");
+    }
+
+    @Test
+    void storedItemsAreLeftAsTheyAre() {
+        cartDAO.save(new Cart(CUSTOMER_ID).add(new Item(null, "sock", 2, 1.5F, null)));
+        Cart cart = cart();
+        Item sock = cart.line(new Item("sock"));
+        Item updated = new Item(sock, 5).nextVersion();
+        new MongoItemDAO(mongoTemplate).save(updated);
+
+        cartDAO.save(cart.add(new Item(null, "shoe", 1, 20F, null)));
+
+        assertThat(mongoTemplate.findById(sock.getId(), Item.class).getQuantity()).isEqualTo(5);
+    }
+
+    private Cart cart() {
+        return cartDAO.findByCustomerId(CUSTOMER_ID).get(0);
+    }
+}
@@ -0,0 +1,133 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Read-your-writes on a two-member replica set, with every read sent to the secondary: each write
+ * through {@link CausalCartDAO} must be visible to the read that follows it, however far the
+ * secondary lags.
+ */
+class ITCausalReads {
+
+    private static final String REPLICA_SET = "rs0";
+    private static final String CUSTOMER_ID = "customer";
+    private static final int WRITES = 200;
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> primary;
+    private static TransitionWalker.ReachedState<RunningMongodProcess> secondary;
+    private static MongoClient client;
+
+    @BeforeAll
+    static void startReplicaSet() throws Exception {
+        primary = member(freePort());
+        secondary = member(freePort());
+        String primaryHost = host(primary);
+        String secondaryHost = host(secondary);
+
+        try (MongoClient direct = MongoClients.create("mongodb://" + primaryHost + "/?directConnection=true")) {
+            direct.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET)
+                    .append("members", List.of(
+                            new Document("_id", 0).append("host", primaryHost).append("priority", 2),
+                            new Document("_id", 1).append("host", secondaryHost).append("priority", 0)))));
+            awaitSecondary(direct);
+        }
+        client = MongoClients.create(new ConnectionString(
+                "mongodb://" + primaryHost + "," + secondaryHost + "/?replicaSet=" + REPLICA_SET));
+    }
+
+    @AfterAll
+    static void stopReplicaSet() {
+        if (client != null) {
+            client.close();
+        }
+        if (secondary != null) {
+            secondary.close();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    @Test
+    void writesAreReadBackFromTheSecondary() {
+        SimpleMongoClientDatabaseFactory databaseFactory = new SimpleMongoClientDatabaseFactory(client, "data");
+        MongoTemplate mongoTemplate = new MongoTemplate(databaseFactory);
+        // w:1 does not wait for the secondary: only the causal session makes the reads wait
+        MongoCartDAO secondaryReads = new MongoCartDAO(mongoTemplate, CartStorageMode.EMBEDDED, true,
+                ReadPreference.secondary(), WriteConcern.W1);
+        CartDAO cartDAO = new CausalCartDAO(secondaryReads, databaseFactory, 1000, Duration.ofMinutes(1),
+                new SimpleMeterRegistry());
+
+        cartDAO.save(new Cart(CUSTOMER_ID));
+        for (int i = 0; i < WRITES; i++) {
+            Cart cart = cartDAO.findByCustomerId(CUSTOMER_ID).get(0);
+            assertThat(cart.getLineCount()).isEqualTo(i);
+            cartDAO.save(cart.add(new Item(null, "item-" + i, 1, 1.5F, null)));
+        }
+
+        Cart cart = cartDAO.findByCustomerId(CUSTOMER_ID).get(0);
+        assertThat(cart.getItems()).hasSize(WRITES);
+        assertThat(cartDAO.revision(CUSTOMER_ID)).isEqualTo(cart.revision());
+    }
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> member(int port) {
+        return Mongod.builder()
+                .mongodArguments(Start.to(MongodArguments.class).initializedWith(
+                        MongodArguments.defaults().withReplication(Storage.of(REPLICA_SET, 0))))
+                .net(Start.to(Net.class).initializedWith(Net.of("localhost", port, false)))
+                .build()
+                .start(Version.Main.V6_0);
+    }
+
+    private static String host(TransitionWalker.ReachedState<RunningMongodProcess> member) {
+        return member.current().getServerAddress().toString();
+    }
+
+    private static void awaitSecondary(MongoClient direct) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            Document status = direct.getDatabase("admin").runCommand(new Document("replSetGetStatus", 1));
+            List<Document> members = status.getList("members", Document.class);
+            if (members.stream().map(member -> member.getString("stateStr")).toList()
+                    .containsAll(List.of("PRIMARY", "SECONDARY"))) {
+                return;
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Replica set " + REPLICA_SET + " did not elect a primary and a secondary");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package works.weave.socks.cart.cart;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import works.weave.socks.cart.entities.Cart;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+/**
+ * {@link IndexManager} against a real server: creating the indexes twice changes nothing, and the
+ * plan check and the unique customer index both stop the startup in {@link IndexManager.Mode#FAIL}.
+ * <p>
+ * Runs against the server in {@code -Dit.mongodb.uri} when one is given (for instance the
+ * {@code carts-db} of docker-compose), and downloads and starts its own mongod otherwise.
+ */
+class ITIndexManager {
+
+    private static final String URI_PROPERTY = "it.mongodb.uri";
+    private static final String DATABASE = "it-index-manager";
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void startMongod() {
+        String uri = System.getProperty(URI_PROPERTY);
+        if (uri == null || uri.isBlank()) {
+            mongod = Mongod.instance().start(Version.Main.V6_0);
+            uri = "mongodb://" + mongod.current().getServerAddress();
+        }
+        client = MongoClients.create(uri);
+    }
+
+    @AfterAll
+    static void stopMongod() {
+        if (client != null) {
+            client.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(client, DATABASE);
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void creatingIndexesTwiceChangesNothing() {
+        new IndexManager(mongoTemplate, IndexManager.Mode.FAIL).run();
+        List<IndexInfo> created = mongoTemplate.indexOps(Cart.class).getIndexInfo();
+
+        new IndexManager(mongoTemplate, IndexManager.Mode.FAIL).run();
+
+        assertThat(mongoTemplate.indexOps(Cart.class).getIndexInfo()).isEqualTo(created);
+        assertThat(created).anySatisfy(index -> {
+            assertThat(index.isIndexForFields(List.of(MongoCartDAO.CUSTOMER_ID))).isTrue();
+            assertThat(index.isUnique()).isTrue();
+        });
+    }
+
+    @Test
+    void collectionScanFailsThePlanCheck() {
+        new IndexManager(mongoTemplate, IndexManager.Mode.FAIL).run();
+        mongoTemplate.indexOps(Cart.class).dropAllIndexes();
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> new IndexManager(mongoTemplate, IndexManager.Mode.FAIL).checkPlans())
+                .withMessageContaining("COLLSCAN");
+    }
+
+    @Test
+    void duplicateCartsFailTheUniqueIndex() {
+        String collection = mongoTemplate.getCollectionName(Cart.class);
+        mongoTemplate.getCollection(collection).insertMany(List.of(
+                new Document(MongoCartDAO.CUSTOMER_ID, "customer"),
+                new Document(MongoCartDAO.CUSTOMER_ID, "customer")));
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> new IndexManager(mongoTemplate, IndexManager.Mode.FAIL).run())
+                .withMessageContaining("could not be created");
+    }
+}
@@ -0,0 +1,138 @@
+package works.weave.socks.cart.cart;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Loads racing with writes, the size bound and the copies of {@link CachingCartDAO}.
+ */
+class UnitCachingCartDAO {
+
+    private static final int MAX_SIZE = 10;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CountingCartDAO database;
+    private CachingCartDAO cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        database = new CountingCartDAO();
+        cache = new CachingCartDAO(database, MAX_SIZE, Duration.ofMinutes(1), Duration.ofMinutes(1), meterRegistry);
+    }
+
+    @Test
+    void loadRacingWithAWriteOfTheSameCartIsNotCached() {
+        database.save(cart("customer", "sock"));
+        database.duringLoad = customerId -> cache.save(cart("customer", "shoe"));
+
+        assertThat(lines(cache.findByCustomerId("customer"))).containsExactly("sock");
+        database.duringLoad = customerId -> { };
+
+        assertThat(lines(cache.findByCustomerId("customer"))).containsExactly("shoe");
+    }
+
+    @Test
+    void writesOfOtherCartsDoNotPreventCaching() {
+        database.save(cart("customer", "sock"));
+        database.duringLoad = customerId -> cache.save(cart("other", "shoe"));
+        cache.findByCustomerId("customer");
+        database.duringLoad = customerId -> { };
+
+        cache.findByCustomerId("customer");
+
+        assertThat(database.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void conflictsDropTheCachedCart() {
+        database.save(cart("customer", "sock"));
+        cache.findByCustomerId("customer");
+        database.conflicts = true;
+
+        assertThatExceptionOfType(OptimisticLockingFailureException.class)
+                .isThrownBy(() -> cache.save(cart("customer", "shoe")));
+        cache.findByCustomerId("customer");
+
+        assertThat(database.loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void theLeastRecentlyReadCartsAreEvictedPastTheMaximumSize() {
+        for (int i = 0; i < MAX_SIZE; i++) {
+            cache.save(cart("customer-" + i, "sock"));
+        }
+        cache.findByCustomerId("customer-0");
+
+        cache.save(cart("customer-" + MAX_SIZE, "sock"));
+
+        assertThat(meterRegistry.get("carts.cache.size").gauge().value()).isLessThanOrEqualTo(MAX_SIZE);
+        assertThat(meterRegistry.get("carts.cache.evictions").counter().count()).isPositive();
+        cache.findByCustomerId("customer-0");
+        cache.findByCustomerId("customer-" + MAX_SIZE);
+        assertThat(database.loads.get()).isZero();
+    }
+
+    @Test
+    void cachedCartsAreCopies() {
+        Cart saved = cache.save(cart("customer", "sock"));
+        saved.add(new Item(null, "hat", 1, 9F, null));
+        cache.findByCustomerId("customer").get(0).add(new Item(null, "shoe", 1, 20F, null));
+
+        assertThat(lines(cache.findByCustomerId("customer"))).containsExactly("sock");
+    }
+
+    private static Cart cart(String customerId, String itemId) {
+        return new Cart(customerId).add(new Item(null, itemId, 1, 1.5F, null));
+    }
+
+    private static List<String> lines(List<Cart> carts) {
+        return carts.get(0).getItems().stream().map(Item::getItemId).toList();
+    }
+
+    private static final class CountingCartDAO implements CartDAO {
+
+        private final Map<String, Cart> carts = new ConcurrentHashMap<>();
+        private final AtomicInteger loads = new AtomicInteger();
+        /** Runs after the stored cart was read, before it is returned. */
+        private Consumer<String> duringLoad = customerId -> { };
+        private boolean conflicts;
+
+        @Override
+        public void delete(Cart cart) {
+            carts.remove(cart.getCustomerId());
+        }
+
+        @Override
+        public Cart save(Cart cart) {
+            if (conflicts) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            carts.put(cart.getCustomerId(), new Cart(cart));
+            return cart;
+        }
+
+        @Override
+        public List<Cart> findByCustomerId(String customerId) {
+            loads.incrementAndGet();
+            Cart cart = carts.get(customerId);
+            List<Cart> found = cart == null ? List.of() : List.of(new Cart(cart));
+            duringLoad.accept(customerId);
+            return found;
+        }
+    }
+}
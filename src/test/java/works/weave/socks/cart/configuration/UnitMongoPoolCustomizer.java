@@ -0,0 +1,52 @@
+package works.weave.socks.cart.configuration;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The pool and timeout properties override the options of the URI only when they are set.
+ */
+class UnitMongoPoolCustomizer {
+
+    private static final String URI = "mongodb://localhost:27017/data?maxPoolSize=20&minPoolSize=5"
+            + "&waitQueueTimeoutMS=1500&maxIdleTimeMS=60000&connectTimeoutMS=3000&socketTimeoutMS=4000";
+
+    @Test
+    void unsetPropertiesLeaveTheUriOptions() {
+        MongoClientSettings settings = customize(null, null, null, null, null, null);
+
+        assertThat(settings.getConnectionPoolSettings().getMaxSize()).isEqualTo(20);
+        assertThat(settings.getConnectionPoolSettings().getMinSize()).isEqualTo(5);
+        assertThat(settings.getConnectionPoolSettings().getMaxWaitTime(TimeUnit.MILLISECONDS)).isEqualTo(1500);
+        assertThat(settings.getConnectionPoolSettings().getMaxConnectionIdleTime(TimeUnit.MILLISECONDS)).isEqualTo(60000);
+        assertThat(settings.getSocketSettings().getConnectTimeout(TimeUnit.MILLISECONDS)).isEqualTo(3000);
+        assertThat(settings.getSocketSettings().getReadTimeout(TimeUnit.MILLISECONDS)).isEqualTo(4000);
+    }
+
+    @Test
+    void setPropertiesWinOverTheUri() {
+        MongoClientSettings settings = customize(50, null, Duration.ofSeconds(2), null, null, Duration.ofSeconds(10));
+
+        assertThat(settings.getConnectionPoolSettings().getMaxSize()).isEqualTo(50);
+        assertThat(settings.getConnectionPoolSettings().getMinSize()).isEqualTo(5);
+        assertThat(settings.getConnectionPoolSettings().getMaxWaitTime(TimeUnit.MILLISECONDS)).isEqualTo(2000);
+        assertThat(settings.getSocketSettings().getConnectTimeout(TimeUnit.MILLISECONDS)).isEqualTo(3000);
+        assertThat(settings.getSocketSettings().getReadTimeout(TimeUnit.MILLISECONDS)).isEqualTo(10000);
+    }
+
+    private static MongoClientSettings customize(Integer maxSize, Integer minSize, Duration maxWait,
+                                                 Duration maxIdle, Duration connectTimeout, Duration socketTimeout) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(URI));
+        new MongoConfiguration().mongoPoolCustomizer(new SimpleMeterRegistry(), maxSize, minSize, maxWait,
+                maxIdle, connectTimeout, socketTimeout).customize(builder);
+        return builder.build();
+    }
+}
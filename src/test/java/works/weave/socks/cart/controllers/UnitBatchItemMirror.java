@@ -0,0 +1,138 @@
+package works.weave.socks.cart.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import works.weave.socks.cart.cart.CartDAO;
+import works.weave.socks.cart.cart.CartLocks;
+import works.weave.socks.cart.cart.OptimisticRetry;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.item.ItemDAO;
+import works.weave.socks.cart.middleware.OperationCounters;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Where items are mirrored (DBREF storage), a line added by a batch is the same item document for
+ * every later write: updating it does not store a new item each time, and deleting it leaves none
+ * behind.
+ */
+class UnitBatchItemMirror {
+
+    private static final String CUSTOMER_ID = "customer";
+
+    private CartDAO cartDAO;
+    private IdItemDAO itemDAO;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cartDAO = new CopyingCartDAO();
+        itemDAO = new IdItemDAO();
+        CartLocks cartLocks = new CartLocks(16, Duration.ofSeconds(10), meterRegistry);
+        OptimisticRetry optimisticRetry = new OptimisticRetry(3, Duration.ZERO, meterRegistry);
+        OperationCounters operationCounters = new OperationCounters(meterRegistry);
+        CartsController cartsController = new CartsController(cartDAO, cartLocks, optimisticRetry,
+                meterRegistry, operationCounters);
+        ItemsController itemsController = new ItemsController(itemDAO, cartsController, cartDAO,
+                cartLocks, optimisticRetry, operationCounters, new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(cartsController, itemsController).build();
+    }
+
+    @Test
+    void addThenSetQuantityThenDeleteLeavesNoItem() throws Exception {
+        batch("[{\"op\":\"add\",\"item\":{\"itemId\":\"sock\",\"quantity\":1,\"unitPrice\":1.5}}]");
+        String lineId = line().getId();
+        assertThat(lineId).isNotNull();
+
+        batch("[{\"op\":\"set-quantity\",\"item\":{\"itemId\":\"sock\",\"quantity\":3}}]");
+        batch("[{\"op\":\"set-quantity\",\"item\":{\"itemId\":\"sock\",\"quantity\":4}}]");
+        assertThat(line().getId()).isEqualTo(lineId);
+        assertThat(itemDAO.items).containsOnlyKeys(lineId);
+        assertThat(itemDAO.items.get(lineId).getQuantity()).isEqualTo(4);
+
+        mockMvc.perform(delete("/carts/" + CUSTOMER_ID + "/items/sock"))
+                .andExpect(status().isAccepted());
+        assertThat(itemDAO.items).isEmpty();
+    }
+
+    private void batch(String operations) throws Exception {
+        mockMvc.perform(post("/carts/" + CUSTOMER_ID + "/items/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operations))
+                .andExpect(status().isOk());
+    }
+
+    private Item line() {
+        return cartDAO.findByCustomerId(CUSTOMER_ID).get(0).line(new Item("sock"));
+    }
+
+    /**
+     * Stores items by id, assigning one to items without, like the Mongo item DAO.
+     */
+    private static final class IdItemDAO implements ItemDAO {
+
+        private final Map<String, Item> items = new HashMap<>();
+
+        @Override
+        public Item save(Item item) {
+            if (item.getId() == null) {
+                item.setId(new ObjectId().toHexString());
+            }
+            items.put(item.getId(), new Item(item, item.getId()));
+            return item;
+        }
+
+        @Override
+        public void destroy(Item item) {
+            if (item.getId() != null) {
+                items.remove(item.getId());
+            }
+        }
+
+        @Override
+        public Item findOne(String id) {
+            return items.get(id);
+        }
+    }
+
+    /**
+     * Stores copies, like a database would, so that ids assigned to items are not seen by the cart.
+     */
+    private static final class CopyingCartDAO implements CartDAO {
+
+        private final Map<String, Cart> carts = new HashMap<>();
+
+        @Override
+        public void delete(Cart cart) {
+            carts.remove(cart.getCustomerId());
+        }
+
+        @Override
+        public Cart save(Cart cart) {
+            carts.put(cart.getCustomerId(), new Cart(cart));
+            return cart;
+        }
+
+        @Override
+        public List<Cart> findByCustomerId(String customerId) {
+            Cart cart = carts.get(customerId);
+            return cart == null ? List.of() : List.of(new Cart(cart));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package works.weave.socks.cart.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import works.weave.socks.cart.cart.CartDAO;
+import works.weave.socks.cart.cart.CartLocks;
+import works.weave.socks.cart.cart.OptimisticRetry;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.item.ItemDAO;
+import works.weave.socks.cart.middleware.OperationCounters;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Every endpoint loads each cart it touches once per request, through the unit of work.
+ */
+class UnitCartLoadsPerRequest {
+
+    private static final String CUSTOMER_ID = "customer";
+    private static final String SESSION_ID = "session";
+
+    private CountingCartDAO cartDAO;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cartDAO = new CountingCartDAO(new CartDAO.Fake());
+        CartLocks cartLocks = new CartLocks(16, Duration.ofSeconds(1), meterRegistry);
+        OptimisticRetry optimisticRetry = new OptimisticRetry(3, Duration.ZERO, meterRegistry);
+        OperationCounters operationCounters = new OperationCounters(meterRegistry);
+        CartsController cartsController = new CartsController(cartDAO, cartLocks, optimisticRetry,
+                meterRegistry, operationCounters);
+        ItemsController itemsController = new ItemsController(new ItemDAO.Fake(), cartsController, cartDAO,
+                cartLocks, optimisticRetry, operationCounters, new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(cartsController, itemsController).build();
+
+        Cart cart = new Cart(CUSTOMER_ID);
+        cart.add(new Item(null, "sock", 1, 9.99F, null));
+        cart.add(new Item(null, "shoe", 2, 59.5F, null));
+        cartDAO.save(cart);
+        Cart session = new Cart(SESSION_ID);
+        session.add(new Item(null, "sock", 1, 9.99F, null));
+        cartDAO.save(session);
+        cartDAO.loads.clear();
+    }
+
+    @Test
+    void getCart() throws Exception {
+        assertLoadsOnce(get("/carts/" + CUSTOMER_ID));
+    }
+
+    @Test
+    void getMissingCart() throws Exception {
+        perform(get("/carts/newcomer"));
+
+        assertThat(cartDAO.loads).containsExactly(Map.entry("newcomer", 1));
+    }
+
+    @Test
+    void getSummary() throws Exception {
+        assertLoadsOnce(get("/carts/" + CUSTOMER_ID + "/summary"));
+    }
+
+    @Test
+    void getItems() throws Exception {
+        assertLoadsOnce(get("/carts/" + CUSTOMER_ID + "/items"));
+    }
+
+    @Test
+    void getItem() throws Exception {
+        assertLoadsOnce(get("/carts/" + CUSTOMER_ID + "/items/shoe"));
+    }
+
+    @Test
+    void addItem() throws Exception {
+        assertLoadsOnce(post("/carts/" + CUSTOMER_ID + "/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":\"sock\",\"quantity\":1,\"unitPrice\":9.99}"));
+    }
+
+    @Test
+    void updateItem() throws Exception {
+        assertLoadsOnce(patch("/carts/" + CUSTOMER_ID + "/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":\"shoe\",\"quantity\":5}"));
+    }
+
+    @Test
+    void removeItem() throws Exception {
+        assertLoadsOnce(delete("/carts/" + CUSTOMER_ID + "/items/shoe"));
+    }
+
+    @Test
+    void batch() throws Exception {
+        assertLoadsOnce(post("/carts/" + CUSTOMER_ID + "/items/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"op\":\"add\",\"item\":{\"itemId\":\"hat\",\"quantity\":1,\"unitPrice\":15}},"
+                        + "{\"op\":\"set-quantity\",\"item\":{\"itemId\":\"shoe\",\"quantity\":3}},"
+                        + "{\"op\":\"remove\",\"item\":{\"itemId\":\"sock\"}}]"));
+    }
+
+    @Test
+    void deleteCart() throws Exception {
+        assertLoadsOnce(delete("/carts/" + CUSTOMER_ID));
+    }
+
+    @Test
+    void mergeCarts() throws Exception {
+        perform(get("/carts/" + CUSTOMER_ID + "/merge").param("sessionId", SESSION_ID));
+
+        assertThat(cartDAO.loads).containsOnly(Map.entry(CUSTOMER_ID, 1), Map.entry(SESSION_ID, 1));
+    }
+
+    private void assertLoadsOnce(RequestBuilder request) throws Exception {
+        perform(request);
+
+        assertThat(cartDAO.loads).containsExactly(Map.entry(CUSTOMER_ID, 1));
+    }
+
+    private void perform(RequestBuilder request) throws Exception {
+        mockMvc.perform(request).andExpect(status().is2xxSuccessful());
+    }
+
+    /**
+     * Counts the cart loads per customer. The default methods of {@link CartDAO} load through
+     * {@link #findByCustomerId}, so they are counted too.
+     */
+    private static final class CountingCartDAO implements CartDAO {
+
+        private final CartDAO cartDAO;
+        private final Map<String, Integer> loads = new HashMap<>();
+
+        CountingCartDAO(CartDAO cartDAO) {
+            this.cartDAO = cartDAO;
+        }
+
+        @Override
+        public void delete(Cart cart) {
+            cartDAO.delete(cart);
+        }
+
+        @Override
+        public Cart save(Cart cart) {
+            return cartDAO.save(cart);
+        }
+
+        @Override
+        public List<Cart> findByCustomerId(String customerId) {
+            loads.merge(customerId, 1, Integer::sum);
+            return cartDAO.findByCustomerId(customerId);
+        }
+    }
+}
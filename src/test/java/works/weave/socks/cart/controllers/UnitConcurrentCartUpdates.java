@@ -0,0 +1,135 @@
+package works.weave.socks.cart.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import works.weave.socks.cart.cart.CartDAO;
+import works.weave.socks.cart.cart.CartLocks;
+import works.weave.socks.cart.cart.OptimisticRetry;
+import works.weave.socks.cart.entities.Cart;
+import works.weave.socks.cart.entities.Item;
+import works.weave.socks.cart.item.ItemDAO;
+import works.weave.socks.cart.middleware.OperationCounters;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Concurrent POSTs and PATCHes on one customer's cart: the per-customer lock must not let any
+ * increment or line be lost. Carts are stored as copies, like a database would, and without any
+ * concurrency control of their own.
+ */
+class UnitConcurrentCartUpdates {
+
+    private static final String CUSTOMER_ID = "customer";
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    private CartDAO cartDAO;
+    private ItemDAO itemDAO;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cartDAO = new CopyingCartDAO();
+        itemDAO = new ItemDAO.Fake();
+        CartLocks cartLocks = new CartLocks(16, Duration.ofSeconds(10), meterRegistry);
+        OptimisticRetry optimisticRetry = new OptimisticRetry(3, Duration.ZERO, meterRegistry);
+        OperationCounters operationCounters = new OperationCounters(meterRegistry);
+        CartsController cartsController = new CartsController(cartDAO, cartLocks, optimisticRetry,
+                meterRegistry, operationCounters);
+        ItemsController itemsController = new ItemsController(itemDAO, cartsController, cartDAO,
+                cartLocks, optimisticRetry, operationCounters, new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(cartsController, itemsController).build();
+
+        Cart cart = new Cart(CUSTOMER_ID);
+        cart.add(new Item("shoe-id", "shoe", 1, 59.5F, null));
+        cartDAO.save(cart);
+    }
+
+    @Test
+    void concurrentAddsAndUpdatesLoseNothing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> requests = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int quantity = 2 + thread;
+                requests.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        mockMvc.perform(post("/carts/" + CUSTOMER_ID + "/items")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"itemId\":\"sock\",\"quantity\":1,\"unitPrice\":9.99}"))
+                                .andExpect(status().isCreated());
+                        mockMvc.perform(patch("/carts/" + CUSTOMER_ID + "/items")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"itemId\":\"shoe\",\"quantity\":" + quantity + "}"))
+                                .andExpect(status().isAccepted());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> request : requests) {
+                request.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Cart cart = cartDAO.findByCustomerId(CUSTOMER_ID).get(0);
+        Item sock = cart.line(new Item("sock"));
+        Item shoe = cart.line(new Item("shoe"));
+        assertThat(cart.getLineCount()).isEqualTo(2);
+        assertThat(sock.getQuantity()).isEqualTo(THREADS * REQUESTS_PER_THREAD);
+        assertThat(shoe.getQuantity()).isIn(IntStream.range(2, 2 + THREADS).boxed().toList());
+        assertThat(cart.getItemCount()).isEqualTo(sock.getQuantity() + shoe.getQuantity());
+        // The item mirror holds the quantity of the last update that won the cart
+        assertThat(itemDAO.findOne(shoe.getId()).getQuantity()).isEqualTo(shoe.getQuantity());
+    }
+
+    /**
+     * Hands out and stores copies, so that a request only sees the writes of others through a
+     * fresh load and a read-modify-write without the lock loses them.
+     */
+    private static final class CopyingCartDAO implements CartDAO {
+
+        private final Map<String, Cart> carts = new ConcurrentHashMap<>();
+
+        @Override
+        public void delete(Cart cart) {
+            carts.remove(cart.getCustomerId());
+        }
+
+        @Override
+        public Cart save(Cart cart) {
+            carts.put(cart.getCustomerId(), new Cart(cart));
+            return cart;
+        }
+
+        @Override
+        public List<Cart> findByCustomerId(String customerId) {
+            Cart cart = carts.get(customerId);
+            return cart == null ? List.of() : List.of(new Cart(cart));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package works.weave.socks.cart.entities;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Merges of a session cart retried after the customer cart was written: nothing may be added twice.
+ */
+class UnitCartMerge {
+
+    @Test
+    void mergingTheSameCartTwiceAddsItOnce() {
+        Cart session = session(new Item(null, "sock", 2, 1.5F, null), new Item(null, "shoe", 1, 20F, null));
+        Cart cart = new Cart("customer").add(new Item(null, "sock", 1, 1.5F, null));
+
+        cart.merge(session);
+        cart.merge(session);
+
+        assertThat(quantity(cart, "sock")).isEqualTo(3);
+        assertThat(quantity(cart, "shoe")).isEqualTo(1);
+        assertThat(cart.getItemCount()).isEqualTo(4);
+    }
+
+    @Test
+    void mergingAgainAddsOnlyWhatTheSessionCartGained() {
+        Cart session = session(new Item(null, "sock", 2, 1.5F, null));
+        Cart cart = new Cart("customer");
+        cart.merge(session);
+
+        session.update(new Item(null, "sock", 5, 1.5F, null));
+        session.add(new Item(null, "hat", 1, 9F, null));
+        cart.merge(session);
+
+        assertThat(quantity(cart, "sock")).isEqualTo(5);
+        assertThat(quantity(cart, "hat")).isEqualTo(1);
+    }
+
+    @Test
+    void unsavedSessionCartsAreMergedEveryTime() {
+        Cart session = new Cart("session").add(new Item(null, "sock", 2, 1.5F, null));
+        Cart cart = new Cart("customer");
+
+        cart.merge(session);
+        cart.merge(session);
+
+        assertThat(quantity(cart, "sock")).isEqualTo(4);
+    }
+
+    @Test
+    void onlyTheLastMergedCartsAreRemembered() {
+        Cart cart = new Cart("customer");
+        for (int i = 0; i <= Cart.MAX_MERGED_CARTS; i++) {
+            Cart session = session(new Item(null, "sock", 1, 1.5F, null));
+            session.setId("session-" + i);
+            cart.merge(session);
+        }
+
+        assertThat(cart.getMerged()).hasSize(Cart.MAX_MERGED_CARTS)
+                .noneMatch(line -> line.cartId().equals("session-0"));
+    }
+
+    @Test
+    void mergedQuantitiesAreStoredWithTheCart() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        Cart session = session(new Item(null, "sock", 2, 1.5F, null));
+        Cart cart = new Cart("customer").merge(session);
+
+        Document document = new Document();
+        converter.write(cart, document);
+        Cart read = converter.read(Cart.class, document).merge(session);
+
+        assertThat(quantity(read, "sock")).isEqualTo(2);
+    }
+
+    private static Cart session(Item... items) {
+        Cart session = new Cart("session");
+        session.setId("session-cart");
+        for (Item item : items) {
+            session.add(item);
+        }
+        return session;
+    }
+
+    private static int quantity(Cart cart, String itemId) {
+        return cart.line(new Item(itemId)).getQuantity();
+    }
+}